@@ -5,9 +5,13 @@
  */
 package com.github.yihtserns.spring.remoting.jsonrpc;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import javax.annotation.Nullable;
 import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.List;
 
 /**
  * @author yihtserns
@@ -15,7 +19,37 @@ import java.lang.reflect.Method;
 @Getter
 public class ExecutionContext {
 
+    static final ThreadLocal<ExecutionContext> CURRENT = new ThreadLocal<>();
+
     JsonRpcRequest<?> request;
     Method serviceInterfaceMethod;
     Method serviceImplementationMethod;
+    /**
+     * In {@link System#nanoTime()} terms, {@code null} if there is no deadline.
+     */
+    @Getter(AccessLevel.NONE)
+    Long deadline;
+    @Getter(AccessLevel.NONE)
+    List<Object> methodArguments;
+
+    /**
+     * @return time left before the execution is abandoned (can be zero or negative when it has already passed), or
+     * {@code null} if the execution has no deadline.
+     */
+    @Nullable
+    public Duration getRemainingTime() {
+        if (deadline == null) {
+            return null;
+        }
+        return Duration.ofNanos(deadline - System.nanoTime());
+    }
+
+    /**
+     * @return context of the method execution happening on the current thread, or {@code null} if the current thread is
+     * not executing a service method.
+     */
+    @Nullable
+    public static ExecutionContext current() {
+        return CURRENT.get();
+    }
 }
@@ -31,4 +31,9 @@ public interface JsonProcessor {
     List<Object> processParamsIntoMethodArguments(ExecutionContext context) throws Exception;
 
     void processResponse(JsonRpcResponse response, OutputStream outputStream) throws Exception;
+
+    /**
+     * Writes a Notification to be pushed to the client, e.g. an event of a subscription.
+     */
+    void processNotification(JsonRpcNotification notification, OutputStream outputStream) throws Exception;
 }
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc;
+
+import lombok.Getter;
+
+/**
+ * <a href="https://www.jsonrpc.org/specification#notification">Notification</a> pushed from the server to the client.
+ */
+@Getter
+public class JsonRpcNotification {
+
+    private final String jsonrpc = "2.0";
+    private final String method;
+    private final Object params;
+
+    public JsonRpcNotification(String method, Object params) {
+        this.method = method;
+        this.params = params;
+    }
+}
@@ -168,5 +168,12 @@ public class JsonRpcResponse {
         public static Error parseError() {
             return new Error(-32700, "Parse error", true);
         }
+
+        /**
+         * Implementation-defined server error, for when the method execution did not complete before its deadline.
+         */
+        public static Error timeout() {
+            return new Error(-32001, "Execution timed out");
+        }
     }
 }
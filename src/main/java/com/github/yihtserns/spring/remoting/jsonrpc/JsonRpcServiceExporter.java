@@ -15,28 +15,60 @@
  */
 package com.github.yihtserns.spring.remoting.jsonrpc;
 
+import com.github.yihtserns.spring.remoting.jsonrpc.capture.TrafficCapture;
+import com.github.yihtserns.spring.remoting.jsonrpc.subscription.EventPublisher;
+import com.github.yihtserns.spring.remoting.jsonrpc.subscription.SubscriptionHub;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.TaskDecorator;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.web.HttpRequestHandler;
 
 import javax.annotation.Nullable;
-import javax.servlet.ServletInputStream;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static java.util.Collections.unmodifiableMap;
 
 @Slf4j
-public class JsonRpcServiceExporter implements HttpRequestHandler, InitializingBean {
+public class JsonRpcServiceExporter implements HttpRequestHandler, InitializingBean, DisposableBean {
 
-    private final Map<String, ServiceMethod> name2Method = new HashMap<>();
+    /**
+     * Immutable snapshot, replaced (never modified) on every registration so that request threads can read it without
+     * locking.
+     */
+    private volatile Map<String, ServiceMethod> name2Method = emptyMap();
+    private final Object registrationLock = new Object();
 
     @Setter
     private Class<?> serviceInterface;
@@ -46,6 +78,72 @@ public class JsonRpcServiceExporter implements HttpRequestHandler, InitializingB
     private JsonProcessor jsonProcessor;
     @Setter
     private ExceptionHandler exceptionHandler = new DefaultExceptionHandler();
+    /**
+     * Timeout for methods not listed in {@link #methodTimeouts}, {@code null} means no timeout.
+     * <p>
+     * Methods having a timeout run on a {@link #timeoutExecutor} thread instead of the request thread, so they only see
+     * {@link ExecutionContext#current()} - other state bound to the request thread (e.g. {@code RequestContextHolder},
+     * {@code SecurityContextHolder}, logging MDC, transactions) is not there unless carried over by
+     * {@link #timeoutTaskDecorator}.
+     * </p>
+     */
+    @Setter
+    private Duration defaultTimeout;
+    /**
+     * Method name to timeout, overriding {@link #defaultTimeout}. Can also list methods that will only be registered
+     * later (e.g. via {@link #registerService(Class, Object, Duration)}). See {@link #defaultTimeout} for which thread
+     * these methods run on.
+     */
+    @Setter
+    private Map<String, Duration> methodTimeouts = emptyMap();
+    /**
+     * Request header the caller can use to send its remaining deadline (in milliseconds), to tighten the method timeout.
+     * Ignored for methods without a timeout, so that callers cannot make them run on {@link #timeoutExecutor}.
+     * {@code null} to ignore the caller's deadline.
+     */
+    @Setter
+    private String timeoutHeaderName = "X-JsonRpc-Timeout";
+    /**
+     * Used to run methods that have a deadline, so that the request thread can stop waiting once the deadline passes.
+     * Will create (and later shut down) its own, with {@link #timeoutThreadCount} threads, if not set.
+     */
+    @Setter
+    private ExecutorService timeoutExecutor;
+    private boolean ownTimeoutExecutor = false;
+    /**
+     * Maximum number of methods running concurrently on the created {@link #timeoutExecutor}, and of methods waiting for
+     * a thread. Calls beyond that fail immediately instead of creating more threads.
+     */
+    @Setter
+    private int timeoutThreadCount = 200;
+    /**
+     * Optional, to wrap the call of a method having a timeout: called on the request thread, the returned task runs on
+     * a {@link #timeoutExecutor} thread, e.g. to carry over state bound to the request thread.
+     */
+    @Setter
+    private TaskDecorator timeoutTaskDecorator;
+    /**
+     * Optional, to record requests for replaying later.
+     */
+    @Setter
+    private TrafficCapture trafficCapture;
+    /**
+     * Optional, to acknowledge Notifications immediately & run them in the background. If not set, Notifications are
+     * only acknowledged after they have run.
+     * <p>
+     * Errors (other than a parse error or a missing method name) can no longer be reported to the caller, so they are
+     * only logged.
+     * </p>
+     */
+    @Setter
+    private NotificationExecutor notificationExecutor;
+    /**
+     * Used to stream events of methods returning {@link EventPublisher}. Will create (and later destroy) its own if not
+     * set.
+     */
+    @Setter
+    private SubscriptionHub subscriptionHub;
+    private boolean ownSubscriptionHub = false;
 
     @Override
     public void afterPropertiesSet() throws NoSuchMethodException {
@@ -55,6 +153,39 @@ public class JsonRpcServiceExporter implements HttpRequestHandler, InitializingB
         if (serviceInterface == null) {
             throw new IllegalArgumentException("Property 'serviceInterface' is required");
         }
+        validateImplementedBy(serviceInterface, service);
+        if (jsonProcessor == null) {
+            throw new IllegalArgumentException("Property 'jsonProcessor' is required");
+        }
+
+        name2Method = unmodifiableMap(createServiceMethods(serviceInterface, service, emptyMap()));
+
+        if (timeoutExecutor == null) {
+            if (timeoutThreadCount < 1) {
+                throw new IllegalArgumentException("Property 'timeoutThreadCount' must be at least 1, but was: " + timeoutThreadCount);
+            }
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("jsonrpc-timeout-");
+            threadFactory.setDaemon(true);
+
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    timeoutThreadCount,
+                    timeoutThreadCount,
+                    60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(timeoutThreadCount),
+                    threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+
+            timeoutExecutor = executor;
+            ownTimeoutExecutor = true;
+        }
+        if (subscriptionHub == null) {
+            subscriptionHub = new SubscriptionHub();
+            subscriptionHub.afterPropertiesSet();
+            ownSubscriptionHub = true;
+        }
+    }
+
+    private static void validateImplementedBy(Class<?> serviceInterface, Object service) {
         if (!serviceInterface.isInstance(service)) {
             throw new IllegalArgumentException(String.format(
                     "Service interface [%s] needs to be implemented by service [%s] of class [%s]",
@@ -62,51 +193,291 @@ public class JsonRpcServiceExporter implements HttpRequestHandler, InitializingB
                     service,
                     service.getClass().getName()));
         }
-        if (jsonProcessor == null) {
-            throw new IllegalArgumentException("Property 'jsonProcessor' is required");
-        }
+    }
 
+    /**
+     * @param timeouts method name to timeout, overriding {@link #methodTimeouts} & {@link #defaultTimeout}
+     */
+    private Map<String, ServiceMethod> createServiceMethods(Class<?> serviceInterface,
+                                                           Object service,
+                                                           Map<String, Duration> timeouts) throws NoSuchMethodException {
+        Map<String, ServiceMethod> serviceMethods = new HashMap<>();
         for (Method interfaceMethod : serviceInterface.getMethods()) {
-            if (name2Method.containsKey(interfaceMethod.getName())) {
-                throw new IllegalArgumentException("Duplicate method name is not supported: " + interfaceMethod.getName());
+            String methodName = interfaceMethod.getName();
+            if (serviceMethods.containsKey(methodName)) {
+                throw new IllegalArgumentException("Duplicate method name is not supported: " + methodName);
+            }
+            Duration timeout = timeouts.containsKey(methodName) ? timeouts.get(methodName) : getConfiguredTimeout(methodName);
+            serviceMethods.put(methodName, createServiceMethod(interfaceMethod, service, timeout));
+        }
+        for (String methodName : timeouts.keySet()) {
+            if (!serviceMethods.containsKey(methodName)) {
+                throw new IllegalArgumentException(String.format(
+                        "Timeout configured for method [%s] which does not exist in service interface [%s]",
+                        methodName,
+                        serviceInterface.getName()));
+            }
+        }
+        return serviceMethods;
+    }
+
+    @Nullable
+    private Duration getConfiguredTimeout(String methodName) {
+        return methodTimeouts.getOrDefault(methodName, defaultTimeout);
+    }
+
+    private static ServiceMethod createServiceMethod(Method interfaceMethod, Object service, @Nullable Duration timeout)
+            throws NoSuchMethodException {
+
+        return new ServiceMethod(
+                interfaceMethod,
+                service.getClass().getMethod(interfaceMethod.getName(), interfaceMethod.getParameterTypes()),
+                service,
+                timeout);
+    }
+
+    /**
+     * Exports all methods of the given service interface, replacing any existing method having the same name.
+     * <p>
+     * Requests that arrive after this returns (or during draining) go to the new implementation.
+     * </p>
+     *
+     * @return {@code true} if in-flight calls of the replaced methods completed within {@code drainTimeout}
+     * @see #unregisterMethods(Collection, Duration)
+     */
+    public boolean registerService(Class<?> serviceInterface, Object service, Duration drainTimeout)
+            throws NoSuchMethodException, InterruptedException {
+
+        return registerService(serviceInterface, service, emptyMap(), drainTimeout);
+    }
+
+    /**
+     * @param methodTimeouts method name to timeout, overriding {@link #methodTimeouts} & {@link #defaultTimeout} for the
+     *                       given service's methods ({@code null} value means no timeout)
+     * @see #registerService(Class, Object, Duration)
+     */
+    public boolean registerService(Class<?> serviceInterface,
+                                   Object service,
+                                   Map<String, Duration> methodTimeouts,
+                                   Duration drainTimeout) throws NoSuchMethodException, InterruptedException {
+
+        validateImplementedBy(serviceInterface, service);
+
+        return updateServiceMethods(createServiceMethods(serviceInterface, service, methodTimeouts), emptyList(), drainTimeout);
+    }
+
+    /**
+     * Exports a single method, replacing any existing method having the same name.
+     *
+     * @return {@code true} if in-flight calls of the replaced method completed within {@code drainTimeout}
+     */
+    public boolean registerMethod(Method interfaceMethod, Object service, Duration drainTimeout)
+            throws NoSuchMethodException, InterruptedException {
+
+        return registerMethod(interfaceMethod, service, getConfiguredTimeout(interfaceMethod.getName()), drainTimeout);
+    }
+
+    /**
+     * @param timeout overrides {@link #methodTimeouts} & {@link #defaultTimeout}, {@code null} means no timeout
+     * @see #registerMethod(Method, Object, Duration)
+     */
+    public boolean registerMethod(Method interfaceMethod, Object service, @Nullable Duration timeout, Duration drainTimeout)
+            throws NoSuchMethodException, InterruptedException {
+
+        validateImplementedBy(interfaceMethod.getDeclaringClass(), service);
+
+        return updateServiceMethods(
+                singletonMap(interfaceMethod.getName(), createServiceMethod(interfaceMethod, service, timeout)),
+                emptyList(),
+                drainTimeout);
+    }
+
+    /**
+     * Stops exporting the given methods, ignoring names that are not exported.
+     *
+     * @return {@code true} if in-flight calls of the removed methods completed within {@code drainTimeout}
+     */
+    public boolean unregisterMethods(Collection<String> methodNames, Duration drainTimeout) throws InterruptedException {
+        return updateServiceMethods(emptyMap(), methodNames, drainTimeout);
+    }
+
+    private boolean updateServiceMethods(Map<String, ServiceMethod> addedMethods,
+                                         Collection<String> removedMethodNames,
+                                         Duration drainTimeout) throws InterruptedException {
+
+        List<ServiceMethod> retiredMethods = new ArrayList<>();
+        synchronized (registrationLock) {
+            Map<String, ServiceMethod> newName2Method = new HashMap<>(name2Method);
+            for (String methodName : removedMethodNames) {
+                ServiceMethod removedMethod = newName2Method.remove(methodName);
+                if (removedMethod != null) {
+                    retiredMethods.add(removedMethod);
+                }
+            }
+            for (Map.Entry<String, ServiceMethod> entry : addedMethods.entrySet()) {
+                ServiceMethod replacedMethod = newName2Method.put(entry.getKey(), entry.getValue());
+                if (replacedMethod != null) {
+                    retiredMethods.add(replacedMethod);
+                }
             }
-            name2Method.put(interfaceMethod.getName(), new ServiceMethod(
-                    interfaceMethod,
-                    service.getClass().getMethod(interfaceMethod.getName(), interfaceMethod.getParameterTypes())));
+            name2Method = unmodifiableMap(newName2Method);
+        }
+
+        retiredMethods.forEach(ServiceMethod::retire);
+        endSubscriptions(retiredMethods);
+
+        return drain(retiredMethods, drainTimeout);
+    }
+
+    /**
+     * So that subscribers reconnect to the replacement instead of being kept on the retired implementation's publisher.
+     */
+    private void endSubscriptions(Collection<ServiceMethod> retiredMethods) {
+        if (subscriptionHub == null || retiredMethods.isEmpty()) {
+            return;
+        }
+        subscriptionHub.endSubscriptions(key -> key instanceof SubscriptionKey
+                && retiredMethods.contains(((SubscriptionKey) key).serviceMethod));
+    }
+
+    private static boolean drain(List<ServiceMethod> retiredMethods, Duration drainTimeout) throws InterruptedException {
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        for (ServiceMethod retiredMethod : retiredMethods) {
+            while (retiredMethod.inFlight.get() > 0) {
+                if (System.nanoTime() - deadline >= 0) {
+                    log.warn("Gave up waiting for {} in-flight call(s) of method: {}",
+                            retiredMethod.inFlight.get(),
+                            retiredMethod.implementationMethod);
+                    return false;
+                }
+                Thread.sleep(10);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        if (ownTimeoutExecutor) {
+            timeoutExecutor.shutdownNow();
+        }
+        if (ownSubscriptionHub) {
+            subscriptionHub.destroy();
         }
     }
 
     @Override
     public void handleRequest(HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
+        long startTime = System.nanoTime();
         ExecutionContext executionContext = new ExecutionContext();
+        TrafficCapture.Sample sample = trafficCapture != null ? trafficCapture.sample() : null;
         try {
-            JsonRpcRequest<?> request = readJsonRpcRequest(httpRequest);
+            JsonRpcRequest<?> request = readJsonRpcRequest(httpRequest, sample);
             executionContext.request = request;
 
-            ServiceMethod serviceMethod = getServiceMethod(request);
-            executionContext.serviceInterfaceMethod = serviceMethod.interfaceMethod;
-            executionContext.serviceImplementationMethod = serviceMethod.implementationMethod;
+            String callerTimeout = timeoutHeaderName != null ? httpRequest.getHeader(timeoutHeaderName) : null;
+            if (notificationExecutor != null && request.getMethod() != null && isNotification(request)) {
+                notificationExecutor.execute(
+                        request.getMethod(),
+                        () -> executeNotification(executionContext, startTime, callerTimeout));
 
-            Object result = executeMethod(convertParamsIntoMethodArguments(executionContext), executionContext);
+                writeJsonRpcResponse(null, httpResponse, sample);
+                return;
+            }
 
-            writeJsonRpcResponse(JsonRpcResponse.success(result, request), httpResponse);
+            ServiceMethod serviceMethod = getServiceMethod(request);
+            Object result = execute(serviceMethod, executionContext, startTime, callerTimeout);
+            if (result instanceof EventPublisher && !isNotification(request)) {
+                subscribe((EventPublisher<?>) result, serviceMethod, executionContext, httpRequest, httpResponse);
+                return;
+            }
+
+            writeJsonRpcResponse(JsonRpcResponse.success(result, request), httpResponse, sample);
         } catch (ExecutionException ex) {
             log.error("Execution failed with error: {} - {}", ex.error.getCode(), ex.error.getMessage(), ex);
 
-            writeJsonRpcResponse(JsonRpcResponse.failure(ex.error, executionContext.getRequest()), httpResponse);
+            writeJsonRpcResponse(JsonRpcResponse.failure(ex.error, executionContext.getRequest()), httpResponse, sample);
         } catch (RuntimeException ex) {
             log.error("Execution failed with unexpected error", ex);
 
             writeJsonRpcResponse(
                     JsonRpcResponse.failure(JsonRpcResponse.Error.internalError(), executionContext.getRequest()),
-                    httpResponse);
+                    httpResponse,
+                    sample);
+        } finally {
+            if (sample != null) {
+                sample.record(startTime);
+            }
+        }
+    }
+
+    private static boolean isNotification(JsonRpcRequest<?> request) {
+        return request.getId().map(stringId -> false, numberId -> false, () -> false, () -> true);
+    }
+
+    private void executeNotification(ExecutionContext executionContext, long startTime, @Nullable String callerTimeout) {
+        try {
+            execute(getServiceMethod(executionContext.getRequest()), executionContext, startTime, callerTimeout);
+        } catch (ExecutionException ex) {
+            log.error("Notification execution failed with error: {} - {}", ex.error.getCode(), ex.error.getMessage(), ex);
+        } catch (RuntimeException ex) {
+            log.error("Notification execution failed with unexpected error", ex);
+        }
+    }
+
+    /**
+     * @param serviceMethod acquired, will be released
+     */
+    private Object execute(ServiceMethod serviceMethod,
+                           ExecutionContext executionContext,
+                           long startTime,
+                           @Nullable String callerTimeout) throws ExecutionException {
+        try {
+            executionContext.serviceInterfaceMethod = serviceMethod.interfaceMethod;
+            executionContext.serviceImplementationMethod = serviceMethod.implementationMethod;
+            executionContext.deadline = getDeadline(startTime, serviceMethod, callerTimeout);
+
+            List<Object> methodArgs = convertParamsIntoMethodArguments(executionContext);
+            executionContext.methodArguments = methodArgs;
+
+            return executeMethod(methodArgs, serviceMethod, executionContext);
+        } finally {
+            serviceMethod.release();
+        }
+    }
+
+    /**
+     * Calls of the same method implementation with the same arguments share the first call's publisher.
+     */
+    private void subscribe(EventPublisher<?> publisher,
+                           ServiceMethod serviceMethod,
+                           ExecutionContext executionContext,
+                           HttpServletRequest httpRequest,
+                           HttpServletResponse httpResponse) {
+
+        String method = executionContext.getRequest().getMethod();
+        SubscriptionKey key = new SubscriptionKey(serviceMethod, method, executionContext.methodArguments.toArray());
+        try {
+            subscriptionHub.subscribe(key, method, publisher, jsonProcessor, httpRequest, httpResponse);
+        } catch (IOException ex) {
+            log.warn("Client disconnected before receiving any event of subscription: {}", key, ex);
+            return;
+        }
+        if (serviceMethod.retired) {
+            // Replaced while subscribing, possibly after the replaced method's subscriptions were ended
+            subscriptionHub.endSubscriptions(key::equals);
         }
     }
 
-    private JsonRpcRequest<?> readJsonRpcRequest(HttpServletRequest httpRequest) throws ExecutionException {
+    private JsonRpcRequest<?> readJsonRpcRequest(HttpServletRequest httpRequest, @Nullable TrafficCapture.Sample sample)
+            throws ExecutionException {
+
         JsonRpcRequest<?> request;
         try {
-            ServletInputStream inputStream = httpRequest.getInputStream();
+            InputStream inputStream = httpRequest.getInputStream();
+            if (sample != null) {
+                inputStream = sample.capture(inputStream);
+            }
 
             request = jsonProcessor.processRequest(inputStream);
         } catch (Exception ex) {
@@ -120,16 +491,57 @@ public class JsonRpcServiceExporter implements HttpRequestHandler, InitializingB
             throw new ExecutionException(JsonRpcResponse.Error.invalidRequest(), "Request has empty 'method' field");
         }
 
-        ServiceMethod serviceMethod = name2Method.get(request.getMethod());
-        if (serviceMethod == null) {
-            throw new ExecutionException(
-                    JsonRpcResponse.Error.methodNotFound(),
-                    String.format("Service Interface [%s] does not have method named: %s",
-                            serviceInterface,
-                            request.getMethod()));
+        while (true) {
+            Map<String, ServiceMethod> name2Method = this.name2Method;
+            ServiceMethod serviceMethod = name2Method.get(request.getMethod());
+            if (serviceMethod == null) {
+                throw new ExecutionException(
+                        JsonRpcResponse.Error.methodNotFound(),
+                        String.format("Service Interface(s) %s do not have method named: %s",
+                                getServiceInterfaces(name2Method.values()),
+                                request.getMethod()));
+            }
+            if (serviceMethod.tryAcquire()) {
+                return serviceMethod;
+            }
+            // Retired between lookup & acquire - look up its replacement
         }
+    }
 
-        return serviceMethod;
+    /**
+     * Service interfaces can change at runtime, so they are taken from the registrations instead of
+     * {@link #serviceInterface}.
+     */
+    private static Set<Class<?>> getServiceInterfaces(Collection<ServiceMethod> serviceMethods) {
+        Set<Class<?>> serviceInterfaces = new LinkedHashSet<>();
+        for (ServiceMethod serviceMethod : serviceMethods) {
+            serviceInterfaces.add(serviceMethod.interfaceMethod.getDeclaringClass());
+        }
+        return serviceInterfaces;
+    }
+
+    /**
+     * @return the earlier of the method timeout & the caller's deadline, or {@code null} if the method has no timeout.
+     */
+    @Nullable
+    private Long getDeadline(long startTime, ServiceMethod serviceMethod, @Nullable String callerTimeout) {
+        if (serviceMethod.timeout == null) {
+            return null;
+        }
+        long deadline = startTime + serviceMethod.timeout.toNanos();
+
+        if (callerTimeout != null) {
+            try {
+                long callerDeadline = startTime + TimeUnit.MILLISECONDS.toNanos(Long.parseLong(callerTimeout.trim()));
+                if (callerDeadline - deadline < 0) {
+                    deadline = callerDeadline;
+                }
+            } catch (NumberFormatException ex) {
+                log.warn("Ignoring invalid value for header {}: {}", timeoutHeaderName, callerTimeout);
+            }
+        }
+
+        return deadline;
     }
 
     private List<Object> convertParamsIntoMethodArguments(ExecutionContext executionContext) throws ExecutionException {
@@ -151,7 +563,8 @@ public class JsonRpcServiceExporter implements HttpRequestHandler, InitializingB
         return methodArgs;
     }
 
-    private Object executeMethod(List<Object> methodArgs, ExecutionContext executionContext) throws ExecutionException {
+    private Object executeMethod(List<Object> methodArgs, ServiceMethod serviceMethod, ExecutionContext executionContext)
+            throws ExecutionException {
         Method method = executionContext.getServiceInterfaceMethod();
 
         if (methodArgs.size() != method.getParameterCount()) {
@@ -164,7 +577,7 @@ public class JsonRpcServiceExporter implements HttpRequestHandler, InitializingB
         }
 
         try {
-            return method.invoke(service, methodArgs.toArray());
+            return invokeWithinDeadline(serviceMethod, methodArgs.toArray(), executionContext);
         } catch (InvocationTargetException ex) {
             JsonRpcResponse.Error error = exceptionHandler.handleException(ex.getCause(), executionContext);
             if (error.getCode() <= -32000 && error.getCode() >= -32768) {
@@ -183,14 +596,109 @@ public class JsonRpcServiceExporter implements HttpRequestHandler, InitializingB
         }
     }
 
-    private void writeJsonRpcResponse(@Nullable JsonRpcResponse response, HttpServletResponse httpResponse) {
+    private Object invokeWithinDeadline(ServiceMethod serviceMethod, Object[] methodArgs, ExecutionContext executionContext)
+            throws ExecutionException, InvocationTargetException, IllegalAccessException {
+
+        Duration remainingTime = executionContext.getRemainingTime();
+        if (remainingTime == null) {
+            return invoke(serviceMethod, methodArgs, executionContext);
+        }
+        if (remainingTime.isNegative() || remainingTime.isZero()) {
+            throw new ExecutionException(
+                    JsonRpcResponse.Error.timeout(),
+                    "Deadline has already passed before calling method: " + executionContext.getServiceImplementationMethod());
+        }
+
+        // Call may outlive this request thread when abandoned, so it needs its own hold on the method for draining
+        serviceMethod.retain();
+        AtomicBoolean holdTaken = new AtomicBoolean();
+        FutureTask<Object> future = new FutureTask<Object>(() -> {
+            if (!holdTaken.compareAndSet(false, true)) {
+                return null; // Cancelled, hold already released
+            }
+            try {
+                return invoke(serviceMethod, methodArgs, executionContext);
+            } finally {
+                serviceMethod.release();
+            }
+        }) {
+            @Override
+            protected void done() {
+                // Cancelled while still queued: the invocation will never run to release the hold
+                if (isCancelled() && holdTaken.compareAndSet(false, true)) {
+                    serviceMethod.release();
+                }
+            }
+        };
+        try {
+            timeoutExecutor.execute(timeoutTaskDecorator != null ? timeoutTaskDecorator.decorate(future) : future);
+        } catch (RejectedExecutionException ex) {
+            serviceMethod.release();
+            throw new ExecutionException(
+                    JsonRpcResponse.Error.internalError(),
+                    "No thread available to run method: " + executionContext.getServiceImplementationMethod(),
+                    ex);
+        } catch (RuntimeException ex) {
+            serviceMethod.release();
+            throw ex;
+        }
+        try {
+            return future.get(remainingTime.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            future.cancel(true);
+            throw new ExecutionException(
+                    JsonRpcResponse.Error.timeout(),
+                    String.format("Method %s did not complete within %s", executionContext.getServiceImplementationMethod(), remainingTime),
+                    ex);
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(
+                    JsonRpcResponse.Error.internalError(),
+                    "Interrupted while waiting for method: " + executionContext.getServiceImplementationMethod(),
+                    ex);
+        } catch (java.util.concurrent.ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof InvocationTargetException) {
+                throw (InvocationTargetException) cause;
+            }
+            if (cause instanceof IllegalAccessException) {
+                throw (IllegalAccessException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static Object invoke(ServiceMethod serviceMethod, Object[] methodArgs, ExecutionContext executionContext)
+            throws InvocationTargetException, IllegalAccessException {
+
+        ExecutionContext.CURRENT.set(executionContext);
+        try {
+            return serviceMethod.interfaceMethod.invoke(serviceMethod.service, methodArgs);
+        } finally {
+            ExecutionContext.CURRENT.remove();
+        }
+    }
+
+    private void writeJsonRpcResponse(@Nullable JsonRpcResponse response,
+                                      HttpServletResponse httpResponse,
+                                      @Nullable TrafficCapture.Sample sample) {
         if (response == null) {
             httpResponse.setStatus(HttpStatus.NO_CONTENT.value());
         } else {
             try {
                 httpResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
 
-                ServletOutputStream outputStream = httpResponse.getOutputStream();
+                OutputStream outputStream = httpResponse.getOutputStream();
+                if (sample != null) {
+                    outputStream = sample.capture(outputStream);
+                }
                 jsonProcessor.processResponse(response, outputStream);
             } catch (Exception ex) {
                 log.error("An error has occurred while trying to write the response body", ex);
@@ -199,14 +707,88 @@ public class JsonRpcServiceExporter implements HttpRequestHandler, InitializingB
         }
     }
 
+    private static class SubscriptionKey {
+
+        /**
+         * Compared by identity, so that a replaced implementation does not share the subscriptions of its predecessor,
+         * nor does another exporter sharing the subscription hub.
+         */
+        private final ServiceMethod serviceMethod;
+        private final String method;
+        private final Object[] methodArgs;
+
+        SubscriptionKey(ServiceMethod serviceMethod, String method, Object[] methodArgs) {
+            this.serviceMethod = serviceMethod;
+            this.method = method;
+            this.methodArgs = methodArgs;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof SubscriptionKey)) {
+                return false;
+            }
+            SubscriptionKey otherKey = (SubscriptionKey) other;
+
+            return serviceMethod == otherKey.serviceMethod
+                    && method.equals(otherKey.method)
+                    && Arrays.deepEquals(methodArgs, otherKey.methodArgs);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(serviceMethod) + method.hashCode()) + Arrays.deepHashCode(methodArgs);
+        }
+
+        @Override
+        public String toString() {
+            return method + Arrays.deepToString(methodArgs);
+        }
+    }
+
     private static class ServiceMethod {
 
         private final Method interfaceMethod;
         private final Method implementationMethod;
+        private final Object service;
+        @Nullable
+        private final Duration timeout;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile boolean retired = false;
 
-        public ServiceMethod(Method interfaceMethod, Method implementationMethod) {
+        public ServiceMethod(Method interfaceMethod, Method implementationMethod, Object service, @Nullable Duration timeout) {
             this.interfaceMethod = interfaceMethod;
             this.implementationMethod = implementationMethod;
+            this.service = service;
+            this.timeout = timeout;
+        }
+
+        /**
+         * @return {@code false} if this method has been retired, i.e. caller should use its replacement instead.
+         */
+        boolean tryAcquire() {
+            inFlight.incrementAndGet();
+            // Checked after incrementing, so either this sees the flag or the drainer sees the count
+            if (retired) {
+                inFlight.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Only for callers already holding an acquisition.
+         */
+        void retain() {
+            inFlight.incrementAndGet();
+        }
+
+        void release() {
+            inFlight.decrementAndGet();
+        }
+
+        void retire() {
+            retired = true;
         }
     }
 
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Collections.emptySet;
+
+/**
+ * Bounded background executor for {@code JsonRpcServiceExporter} to run
+ * <a href="https://www.jsonrpc.org/specification#notification">Notifications</a> after they have been acknowledged,
+ * instead of making the caller wait for a response it will never get.
+ */
+@Slf4j
+public class NotificationExecutor implements InitializingBean, DisposableBean {
+
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    /**
+     * Method name to the latest notification waiting to run, for {@link #coalescedMethods}.
+     */
+    private final Map<String, Runnable> method2PendingTask = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+
+    @Setter
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    /**
+     * Notifications waiting to run, beyond which {@link #overflowPolicy} kicks in.
+     */
+    @Setter
+    private int queueCapacity = 10_000;
+    @Setter
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+    /**
+     * Methods whose notifications only matter for their latest params (e.g. status updates): a notification that is still
+     * waiting to run is replaced by a newer one for the same method.
+     */
+    @Setter
+    private Collection<String> coalescedMethods = emptySet();
+
+    @Override
+    public void afterPropertiesSet() {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Property 'threadCount' must be at least 1, but was: " + threadCount);
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Property 'queueCapacity' must be at least 1, but was: " + queueCapacity);
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("Property 'overflowPolicy' is required");
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("jsonrpc-notification-");
+        threadFactory.setDaemon(true);
+
+        executor = new ThreadPoolExecutor(
+                threadCount,
+                threadCount,
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory,
+                overflowPolicy.rejectedExecutionHandler);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Abandoned {} notification(s) that did not run in time", executor.shutdownNow().size());
+        }
+        if (droppedCount.get() > 0) {
+            log.warn("Dropped {} notification(s) because the queue was full", droppedCount.get());
+        }
+    }
+
+    /**
+     * @param methodName of the notification, to coalesce by
+     */
+    void execute(String methodName, Runnable task) {
+        if (!coalescedMethods.contains(methodName)) {
+            if (!submit(task)) {
+                droppedCount.incrementAndGet();
+            }
+            return;
+        }
+
+        if (method2PendingTask.put(methodName, task) != null) {
+            // Not picked up yet, the already-queued runner will pick up this task instead
+            coalescedCount.incrementAndGet();
+            return;
+        }
+        Runnable runner = () -> {
+            Runnable latestTask = method2PendingTask.remove(methodName);
+            if (latestTask != null) {
+                latestTask.run();
+            }
+        };
+        Runnable pendingTask = task;
+        while (!submit(runner)) {
+            // Otherwise nothing would ever pick up later notifications of this method
+            if (method2PendingTask.remove(methodName, pendingTask)) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            // Replaced meanwhile by a newer notification, which counts on this runner to pick it up
+            pendingTask = method2PendingTask.get(methodName);
+            if (pendingTask == null) {
+                return;
+            }
+        }
+    }
+
+    private boolean submit(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException ex) {
+            log.debug("Dropped notification", ex);
+            return false;
+        }
+    }
+
+    /**
+     * @return number of notifications waiting to run
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return number of notifications rejected because the queue was full (or the executor has been shut down)
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return number of notifications replaced by a newer one before they got to run
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public enum OverflowPolicy {
+
+        /**
+         * Discard the notification.
+         */
+        DROP(new ThreadPoolExecutor.AbortPolicy()),
+        /**
+         * Run the notification on the request thread, delaying its acknowledgement.
+         */
+        CALLER_RUNS(new ThreadPoolExecutor.CallerRunsPolicy()),
+        /**
+         * Make the request thread wait for space in the queue, delaying its acknowledgement.
+         */
+        BLOCK((task, executor) -> {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Executor has been shut down");
+            }
+            try {
+                executor.getQueue().put(task);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for space in the queue", ex);
+            }
+        });
+
+        private final RejectedExecutionHandler rejectedExecutionHandler;
+
+        OverflowPolicy(RejectedExecutionHandler rejectedExecutionHandler) {
+            this.rejectedExecutionHandler = rejectedExecutionHandler;
+        }
+    }
+}
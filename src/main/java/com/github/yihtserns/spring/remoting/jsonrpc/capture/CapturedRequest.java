@@ -0,0 +1,43 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc.capture;
+
+import lombok.Getter;
+
+/**
+ * Request recorded by {@link TrafficCapture}.
+ */
+@Getter
+public class CapturedRequest {
+
+    /**
+     * Time between the start of the capture & the arrival of this request.
+     */
+    private final long offsetNanos;
+    /**
+     * Time the exporter took to handle this request.
+     */
+    private final long durationNanos;
+    private final int responseSize;
+    private final byte[] body;
+
+    CapturedRequest(long offsetNanos, long durationNanos, int responseSize, byte[] body) {
+        this.offsetNanos = offsetNanos;
+        this.durationNanos = durationNanos;
+        this.responseSize = responseSize;
+        this.body = body;
+    }
+}
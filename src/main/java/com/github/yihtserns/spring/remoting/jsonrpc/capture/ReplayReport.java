@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc.capture;
+
+import com.github.yihtserns.spring.remoting.jsonrpc.util.LatencyHistogram;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Result of {@link TrafficReplayer#replay(java.util.List, ReplayTarget)}.
+ */
+@Getter
+public class ReplayReport {
+
+    private final long requestCount;
+    private final long failedCount;
+    private final Duration elapsed;
+    /**
+     * Nanoseconds between when each request was supposed to be sent (according to the capture) & when its response
+     * arrived, so requests delayed by earlier slow ones are not under-reported.
+     */
+    private final LatencyHistogram latencyHistogram;
+
+    ReplayReport(long requestCount, long failedCount, Duration elapsed, LatencyHistogram latencyHistogram) {
+        this.requestCount = requestCount;
+        this.failedCount = failedCount;
+        this.elapsed = elapsed;
+        this.latencyHistogram = latencyHistogram;
+    }
+
+    /**
+     * @return requests per second
+     */
+    public double getThroughput() {
+        return elapsed.isZero() ? 0 : requestCount * 1e9 / elapsed.toNanos();
+    }
+
+    public Duration getLatencyAtPercentile(double percentile) {
+        return Duration.ofNanos(latencyHistogram.getValueAtPercentile(percentile));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "requests=%d, failed=%d, elapsed=%dms, throughput=%.1f/s, latency p50=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+                requestCount,
+                failedCount,
+                elapsed.toMillis(),
+                getThroughput(),
+                latencyHistogram.getValueAtPercentile(50) / 1e6,
+                latencyHistogram.getValueAtPercentile(99) / 1e6,
+                latencyHistogram.getValueAtPercentile(99.9) / 1e6,
+                latencyHistogram.getMaxValue() / 1e6);
+    }
+}
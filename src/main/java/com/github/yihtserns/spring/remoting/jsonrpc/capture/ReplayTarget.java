@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc.capture;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Where {@link TrafficReplayer} sends the captured requests.
+ */
+@FunctionalInterface
+public interface ReplayTarget {
+
+    /**
+     * @throws Exception to count the request as failed
+     */
+    void send(byte[] request) throws Exception;
+
+    static ReplayTarget url(String url) {
+        return url(url, new SimpleClientHttpRequestFactory());
+    }
+
+    static ReplayTarget url(String url, ClientHttpRequestFactory requestFactory) {
+        URI uri = URI.create(url);
+
+        return request -> {
+            ClientHttpRequest httpRequest = requestFactory.createRequest(uri, HttpMethod.POST);
+            httpRequest.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            httpRequest.getBody().write(request);
+
+            try (ClientHttpResponse httpResponse = httpRequest.execute()) {
+                StreamUtils.drain(httpResponse.getBody());
+                if (httpResponse.getRawStatusCode() >= 400) {
+                    throw new IOException("Responded with status: " + httpResponse.getRawStatusCode());
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc.capture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Collections.emptyMap;
+
+/**
+ * Samples requests handled by {@code JsonRpcServiceExporter} into an append-only file, to be replayed by
+ * {@link TrafficReplayer}.
+ * <p>
+ * Request threads only copy the request body & hand it over to a background writer thread - if the writer cannot keep
+ * up, samples are dropped instead of slowing down the requests.
+ * </p>
+ */
+@Slf4j
+public class TrafficCapture implements InitializingBean, DisposableBean {
+
+    private static final int MAGIC = 0x4A524331; // "JRC1"
+    private static final byte SESSION_START = 'S';
+    private static final byte REQUEST = 'R';
+    private static final CapturedRequest END_OF_CAPTURE = new CapturedRequest(0, 0, 0, new byte[0]);
+    private static final String REDACTED = "<redacted>";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private BlockingQueue<CapturedRequest> queue;
+    private Thread writerThread;
+    private long startTime;
+
+    @Setter
+    private Path file;
+    /**
+     * Fraction of requests to capture, between 0 & 1.
+     */
+    @Setter
+    private double sampleRate = 1;
+    /**
+     * Method name to the params whose values will not be written to the file: index of the param when {@code params} is
+     * a JSON array, or its field name when {@code params} is a JSON object.
+     */
+    @Setter
+    private Map<String, Collection<String>> redactedParams = emptyMap();
+    /**
+     * Samples waiting to be written, beyond which new samples are dropped.
+     */
+    @Setter
+    private int queueCapacity = 10_000;
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Property 'file' is required");
+        }
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Property 'sampleRate' must be between 0 and 1, but was: " + sampleRate);
+        }
+
+        boolean newFile = !Files.exists(file) || Files.size(file) == 0;
+        DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        if (newFile) {
+            outputStream.writeInt(MAGIC);
+        }
+        outputStream.writeByte(SESSION_START);
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        startTime = System.nanoTime();
+        writerThread = new Thread(() -> writeLoop(outputStream), "jsonrpc-traffic-capture");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        // Writer may have stopped (e.g. failed to write) with the queue full, in which case it would wait forever
+        if (!writerThread.isAlive() || !queue.offer(END_OF_CAPTURE, 10, TimeUnit.SECONDS)) {
+            writerThread.interrupt();
+        }
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+
+        if (droppedCount.get() > 0) {
+            log.warn("Dropped {} sample(s) because the writer could not keep up", droppedCount.get());
+        }
+    }
+
+    /**
+     * @return {@code null} if the request should not be captured
+     */
+    @Nullable
+    public Sample sample() {
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return null;
+        }
+        return new Sample();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void writeLoop(DataOutputStream outputStream) {
+        try (DataOutputStream out = outputStream) {
+            while (true) {
+                CapturedRequest capturedRequest = queue.poll();
+                if (capturedRequest == null) {
+                    out.flush();
+                    capturedRequest = queue.take();
+                }
+                if (capturedRequest == END_OF_CAPTURE) {
+                    return;
+                }
+
+                byte[] body = redact(capturedRequest.getBody());
+                out.writeByte(REQUEST);
+                out.writeLong(capturedRequest.getOffsetNanos());
+                out.writeLong(capturedRequest.getDurationNanos());
+                out.writeInt(capturedRequest.getResponseSize());
+                out.writeInt(body.length);
+                out.write(body);
+            }
+        } catch (InterruptedException ex) {
+            log.warn("Traffic capture interrupted, stopped writing to: {}", file);
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            log.error("Failed to write to capture file, stopped capturing: {}", file, ex);
+        }
+    }
+
+    private byte[] redact(byte[] body) {
+        if (redactedParams.isEmpty()) {
+            return body;
+        }
+
+        JsonNode requestOrBatch;
+        try {
+            requestOrBatch = objectMapper.readTree(body);
+        } catch (IOException ex) {
+            return body; // Not a valid request, so there are no params to redact
+        }
+
+        boolean redacted = false;
+        if (requestOrBatch instanceof ArrayNode) {
+            for (JsonNode request : requestOrBatch) {
+                redacted |= redact(request);
+            }
+        } else {
+            redacted = redact(requestOrBatch);
+        }
+        if (!redacted) {
+            return body;
+        }
+
+        try {
+            return objectMapper.writeValueAsBytes(requestOrBatch);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Should not fail to write JSON tree", ex);
+        }
+    }
+
+    /**
+     * @return {@code true} if the request is for a method that has params to redact
+     */
+    private boolean redact(JsonNode request) {
+        Collection<String> paramsToRedact = redactedParams.get(request.path("method").asText());
+        if (paramsToRedact == null) {
+            return false;
+        }
+
+        JsonNode params = request.get("params");
+        for (String param : paramsToRedact) {
+            if (params instanceof ArrayNode) {
+                try {
+                    int index = Integer.parseInt(param);
+                    if (index < params.size()) {
+                        ((ArrayNode) params).set(index, objectMapper.getNodeFactory().textNode(REDACTED));
+                    }
+                } catch (NumberFormatException ex) {
+                    // Field name is not applicable to array params
+                }
+            } else if (params instanceof ObjectNode && params.has(param)) {
+                ((ObjectNode) params).put(param, REDACTED);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads all requests in the given capture file, in the order they were captured. Sessions appended to the same
+     * file are placed back-to-back.
+     */
+    public static List<CapturedRequest> readAll(Path file) throws IOException {
+        List<CapturedRequest> capturedRequests = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a capture file: " + file);
+            }
+
+            long sessionOffset = 0;
+            long lastOffset = 0;
+            while (true) {
+                int type = in.read();
+                if (type == -1) {
+                    break;
+                }
+                if (type == SESSION_START) {
+                    sessionOffset = lastOffset;
+                    continue;
+                }
+                if (type != REQUEST) {
+                    throw new IOException("Corrupted capture file: " + file);
+                }
+
+                try {
+                    long offsetNanos = sessionOffset + in.readLong();
+                    long durationNanos = in.readLong();
+                    int responseSize = in.readInt();
+                    byte[] body = new byte[in.readInt()];
+                    in.readFully(body);
+
+                    capturedRequests.add(new CapturedRequest(offsetNanos, durationNanos, responseSize, body));
+                    lastOffset = Math.max(lastOffset, offsetNanos);
+                } catch (EOFException ex) {
+                    log.warn("Ignoring incomplete last entry of capture file: {}", file);
+                    break;
+                }
+            }
+        }
+        // Samples are handed to the writer when the request completes, so they are not necessarily in arrival order
+        capturedRequests.sort((first, second) -> Long.compare(first.getOffsetNanos(), second.getOffsetNanos()));
+
+        return capturedRequests;
+    }
+
+    /**
+     * Captures a single request.
+     */
+    public class Sample {
+
+        private final ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+        private int responseSize = 0;
+
+        private Sample() {
+        }
+
+        /**
+         * @return stream that copies whatever is read from the given request body
+         */
+        public InputStream capture(InputStream inputStream) {
+            return new FilterInputStream(inputStream) {
+
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1) {
+                        requestBody.write(b);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int readCount = super.read(buffer, offset, length);
+                    if (readCount > 0) {
+                        requestBody.write(buffer, offset, readCount);
+                    }
+                    return readCount;
+                }
+            };
+        }
+
+        /**
+         * @return stream that counts whatever is written to the given response body
+         */
+        public OutputStream capture(OutputStream outputStream) {
+            return new FilterOutputStream(outputStream) {
+
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    responseSize++;
+                }
+
+                @Override
+                public void write(byte[] buffer, int offset, int length) throws IOException {
+                    out.write(buffer, offset, length);
+                    responseSize += length;
+                }
+            };
+        }
+
+        /**
+         * @param requestStartTime {@link System#nanoTime()} when the request started
+         */
+        public void record(long requestStartTime) {
+            CapturedRequest capturedRequest = new CapturedRequest(
+                    requestStartTime - startTime,
+                    System.nanoTime() - requestStartTime,
+                    responseSize,
+                    requestBody.toByteArray());
+
+            if (!queue.offer(capturedRequest)) {
+                droppedCount.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc.capture;
+
+import com.github.yihtserns.spring.remoting.jsonrpc.util.LatencyHistogram;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Re-sends requests recorded by {@link TrafficCapture}, keeping their original spacing (optionally sped up or slowed
+ * down), regardless of how long the target takes to respond.
+ */
+@Slf4j
+public class TrafficReplayer {
+
+    /**
+     * Multiplier of the original request rate, e.g. {@code 2} to send twice as fast. {@code 0} to send as fast as
+     * possible.
+     */
+    @Setter
+    private double speed = 1;
+    /**
+     * Maximum requests in flight.
+     */
+    @Setter
+    private int concurrency = 16;
+
+    public ReplayReport replay(Path captureFile, ReplayTarget target) throws IOException, InterruptedException {
+        return replay(TrafficCapture.readAll(captureFile), target);
+    }
+
+    public ReplayReport replay(List<CapturedRequest> capturedRequests, ReplayTarget target) throws InterruptedException {
+        if (speed < 0) {
+            throw new IllegalArgumentException("Property 'speed' must not be negative, but was: " + speed);
+        }
+
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+        AtomicLong failedCount = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, new CustomizableThreadFactory("jsonrpc-replay-"));
+
+        long firstOffset = capturedRequests.isEmpty() ? 0 : capturedRequests.get(0).getOffsetNanos();
+        long startTime = System.nanoTime();
+        try {
+            for (CapturedRequest capturedRequest : capturedRequests) {
+                long intendedTime = startTime;
+                if (speed > 0) {
+                    intendedTime += (long) ((capturedRequest.getOffsetNanos() - firstOffset) / speed);
+                    waitUntil(intendedTime);
+                } else {
+                    intendedTime = System.nanoTime();
+                }
+
+                long sendTime = intendedTime;
+                executor.execute(() -> {
+                    try {
+                        target.send(capturedRequest.getBody());
+                    } catch (Exception ex) {
+                        log.debug("Replayed request failed", ex);
+                        failedCount.incrementAndGet();
+                    }
+                    latencyHistogram.record(Math.max(0, System.nanoTime() - sendTime));
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+        return new ReplayReport(
+                capturedRequests.size(),
+                failedCount.get(),
+                Duration.ofNanos(System.nanoTime() - startTime),
+                latencyHistogram);
+    }
+
+    private static void waitUntil(long time) throws InterruptedException {
+        long remaining;
+        while ((remaining = time - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc.gateway;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Backend endpoint, with passive health tracking: ejected for a while after too many consecutive failures.
+ */
+@Slf4j
+class Backend {
+
+    final URI uri;
+    final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile boolean ejected = false;
+    private volatile long ejectedUntil;
+
+    Backend(URI uri) {
+        this.uri = uri;
+    }
+
+    boolean isAvailable() {
+        return !ejected || System.nanoTime() - ejectedUntil >= 0;
+    }
+
+    void recordSuccess() {
+        consecutiveFailures.set(0);
+        ejected = false;
+    }
+
+    void recordFailure(int maxConsecutiveFailures, Duration ejectionDuration) {
+        if (consecutiveFailures.incrementAndGet() >= maxConsecutiveFailures) {
+            consecutiveFailures.set(0);
+            ejectedUntil = System.nanoTime() + ejectionDuration.toNanos();
+            ejected = true;
+
+            log.warn("Ejecting backend {} for {} after {} consecutive failure(s)", uri, ejectionDuration, maxConsecutiveFailures);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return uri.toString();
+    }
+}
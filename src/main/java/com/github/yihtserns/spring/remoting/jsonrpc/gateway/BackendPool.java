@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc.gateway;
+
+import org.springframework.util.PatternMatchUtils;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Runtime counterpart of {@link Route}.
+ */
+class BackendPool {
+
+    private static final int VIRTUAL_NODES_PER_BACKEND = 100;
+
+    private final String methodPattern;
+    private final LoadBalancingStrategy strategy;
+    @Nullable
+    private final String hashParam;
+    private final List<Backend> backends;
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final TreeMap<Integer, Backend> hashRing = new TreeMap<>();
+
+    BackendPool(Route route) {
+        if (route.getMethodPattern() == null) {
+            throw new IllegalArgumentException("Property 'methodPattern' is required");
+        }
+        if (route.getBackends().isEmpty()) {
+            throw new IllegalArgumentException("Route for method pattern [" + route.getMethodPattern() + "] has no backends");
+        }
+        if (route.getStrategy() == LoadBalancingStrategy.CONSISTENT_HASH && route.getHashParam() == null) {
+            throw new IllegalArgumentException(
+                    "Route for method pattern [" + route.getMethodPattern() + "] needs 'hashParam' to use " + route.getStrategy());
+        }
+
+        this.methodPattern = route.getMethodPattern();
+        this.strategy = route.getStrategy();
+        this.hashParam = route.getHashParam();
+        this.backends = route.getBackends().stream()
+                .map(URI::create)
+                .map(Backend::new)
+                .collect(toList());
+
+        if (strategy == LoadBalancingStrategy.CONSISTENT_HASH) {
+            for (Backend backend : backends) {
+                for (int i = 0; i < VIRTUAL_NODES_PER_BACKEND; i++) {
+                    hashRing.put(hash((backend.uri + "#" + i).getBytes(StandardCharsets.UTF_8)), backend);
+                }
+            }
+        }
+    }
+
+    boolean matches(String method) {
+        return PatternMatchUtils.simpleMatch(methodPattern, method);
+    }
+
+    @Nullable
+    String getHashParam() {
+        return hashParam;
+    }
+
+    /**
+     * Prefers healthy backends, but still returns an ejected one if all of them are ejected.
+     *
+     * @param hashKey for {@link LoadBalancingStrategy#CONSISTENT_HASH}, falls back to round-robin if {@code null}
+     */
+    Backend choose(@Nullable byte[] hashKey) {
+        Backend backend = choose(hashKey, true);
+        if (backend == null) {
+            backend = choose(hashKey, false);
+        }
+        return backend;
+    }
+
+    @Nullable
+    private Backend choose(@Nullable byte[] hashKey, boolean availableOnly) {
+        switch (strategy) {
+            case CONSISTENT_HASH:
+                if (hashKey != null) {
+                    return chooseByHash(hashKey, availableOnly);
+                }
+                return chooseRoundRobin(availableOnly);
+            case LEAST_OUTSTANDING:
+                return chooseLeastOutstanding(availableOnly);
+            default:
+                return chooseRoundRobin(availableOnly);
+        }
+    }
+
+    @Nullable
+    private Backend chooseRoundRobin(boolean availableOnly) {
+        int start = nextIndex.getAndIncrement();
+        for (int i = 0; i < backends.size(); i++) {
+            Backend backend = backends.get(Math.floorMod(start + i, backends.size()));
+            if (!availableOnly || backend.isAvailable()) {
+                return backend;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private Backend chooseLeastOutstanding(boolean availableOnly) {
+        // Rotating the starting point so that ties are spread out
+        int start = nextIndex.getAndIncrement();
+        Backend leastOutstanding = null;
+        for (int i = 0; i < backends.size(); i++) {
+            Backend backend = backends.get(Math.floorMod(start + i, backends.size()));
+            if (availableOnly && !backend.isAvailable()) {
+                continue;
+            }
+            if (leastOutstanding == null || backend.outstanding.get() < leastOutstanding.outstanding.get()) {
+                leastOutstanding = backend;
+            }
+        }
+        return leastOutstanding;
+    }
+
+    @Nullable
+    private Backend chooseByHash(byte[] hashKey, boolean availableOnly) {
+        int hash = hash(hashKey);
+        for (Map<Integer, Backend> segment : asList(hashRing.tailMap(hash, true), hashRing.headMap(hash, false))) {
+            for (Backend backend : segment.values()) {
+                if (!availableOnly || backend.isAvailable()) {
+                    return backend;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * FNV-1a, with MurmurHash3's finalizer to spread out similar keys.
+     */
+    private static int hash(byte[] key) {
+        int hash = 0x811c9dc5;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+
+        return hash;
+    }
+}
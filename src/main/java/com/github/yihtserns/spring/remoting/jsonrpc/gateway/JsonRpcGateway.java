@@ -0,0 +1,416 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc.gateway;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcResponse;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.HttpRequestHandler;
+
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Forwards JSON-RPC requests to backend endpoints (e.g. other {@code JsonRpcServiceExporter}s), chosen by the
+ * {@link Route} matching the request's method name.
+ * <p>
+ * Only the fields needed for routing are read from the request, the request itself is forwarded as the original bytes.
+ * Elements of a batch request are forwarded separately (concurrently, using {@link #setBatchExecutor(ExecutorService)
+ * batchExecutor}), then their responses are combined.
+ * </p>
+ * <p>
+ * Connection pooling is up to {@link #setRequestFactory(ClientHttpRequestFactory) requestFactory} - the default one
+ * relies on {@link java.net.HttpURLConnection}'s keep-alive connection cache (sized by the {@code http.maxConnections}
+ * system property), use e.g. {@code HttpComponentsClientHttpRequestFactory} for a proper connection pool.
+ * </p>
+ */
+@Slf4j
+public class JsonRpcGateway implements HttpRequestHandler, InitializingBean, DisposableBean {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private List<BackendPool> backendPools = emptyList();
+
+    /**
+     * Evaluated in order, first match wins.
+     */
+    @Setter
+    private List<Route> routes = emptyList();
+    /**
+     * Will create a {@link SimpleClientHttpRequestFactory} using {@link #connectTimeout} & {@link #readTimeout} if not
+     * set.
+     */
+    @Setter
+    private ClientHttpRequestFactory requestFactory;
+    /**
+     * Only for the created {@link #requestFactory}.
+     */
+    @Setter
+    private Duration connectTimeout = Duration.ofSeconds(5);
+    /**
+     * Only for the created {@link #requestFactory}. How long to wait for a backend to respond - a timeout counts as a
+     * failure of the backend.
+     */
+    @Setter
+    private Duration readTimeout = Duration.ofSeconds(60);
+    /**
+     * Used to forward elements of a batch request concurrently. Will create (and later shut down) its own, with
+     * {@link #batchThreadCount} threads, if not set.
+     */
+    @Setter
+    private ExecutorService batchExecutor;
+    private boolean ownBatchExecutor = false;
+    /**
+     * Maximum number of batch elements forwarded concurrently by the created {@link #batchExecutor}, across all batch
+     * requests. Elements beyond that are forwarded by the request thread itself.
+     */
+    @Setter
+    private int batchThreadCount = 200;
+    /**
+     * Headers to copy as-is from the incoming request to the forwarded requests. Should not include
+     * {@link #timeoutHeaderName}, which is forwarded separately.
+     */
+    @Setter
+    private List<String> forwardedHeaderNames = emptyList();
+    /**
+     * Request header the caller can use to send its remaining deadline (in milliseconds), see
+     * {@code JsonRpcServiceExporter}. Forwarded with the time already spent by the gateway (e.g. reading the request,
+     * waiting for a {@link #batchExecutor} thread) subtracted, so that backends do not get a later deadline than the
+     * caller has. {@code null} to not forward the caller's deadline.
+     */
+    @Setter
+    private String timeoutHeaderName = "X-JsonRpc-Timeout";
+    /**
+     * Connection failures, timeouts or 5xx responses in a row before a backend is ejected.
+     */
+    @Setter
+    private int maxConsecutiveFailures = 3;
+    @Setter
+    private Duration ejectionDuration = Duration.ofSeconds(30);
+
+    @Override
+    public void afterPropertiesSet() {
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException("Property 'routes' is required");
+        }
+        if (maxConsecutiveFailures < 1) {
+            throw new IllegalArgumentException("Property 'maxConsecutiveFailures' must be at least 1, but was: " + maxConsecutiveFailures);
+        }
+        backendPools = routes.stream().map(BackendPool::new).collect(toList());
+
+        if (requestFactory == null) {
+            SimpleClientHttpRequestFactory simpleRequestFactory = new SimpleClientHttpRequestFactory();
+            simpleRequestFactory.setConnectTimeout(Math.toIntExact(connectTimeout.toMillis()));
+            simpleRequestFactory.setReadTimeout(Math.toIntExact(readTimeout.toMillis()));
+
+            requestFactory = simpleRequestFactory;
+        }
+        if (batchExecutor == null) {
+            if (batchThreadCount < 1) {
+                throw new IllegalArgumentException("Property 'batchThreadCount' must be at least 1, but was: " + batchThreadCount);
+            }
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("jsonrpc-gateway-");
+            threadFactory.setDaemon(true);
+
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    batchThreadCount,
+                    batchThreadCount,
+                    60, TimeUnit.SECONDS,
+                    new SynchronousQueue<>(),
+                    threadFactory,
+                    // Unlike CallerRunsPolicy, still runs the task after shutdown instead of leaving its Future hanging
+                    (task, rejectingExecutor) -> task.run());
+            executor.allowCoreThreadTimeOut(true);
+
+            batchExecutor = executor;
+            ownBatchExecutor = true;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (ownBatchExecutor) {
+            batchExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void handleRequest(HttpServletRequest httpRequest, HttpServletResponse httpResponse) throws IOException {
+        Long callerDeadline = getCallerDeadline(System.nanoTime(), httpRequest);
+        byte[] body = StreamUtils.copyToByteArray(httpRequest.getInputStream());
+
+        List<byte[]> responses = new ArrayList<>();
+        boolean batch;
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            JsonToken token = parser.nextToken();
+            batch = token == JsonToken.START_ARRAY;
+
+            List<RawRequest> requests = new ArrayList<>();
+            if (token == JsonToken.START_OBJECT) {
+                requests.add(RawRequest.read(parser, body));
+            } else if (batch) {
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == JsonToken.START_OBJECT) {
+                        requests.add(RawRequest.read(parser, body));
+                    } else {
+                        parser.skipChildren();
+                        requests.add(null); // Not a request object
+                    }
+                }
+            } else {
+                throw new IOException("Expected JSON object or array, but was: " + token);
+            }
+            if (parser.nextToken() != null) {
+                throw new IOException("Unexpected content after the request");
+            }
+
+            if (requests.isEmpty()) {
+                batch = false;
+                responses.add(errorResponse(null, JsonRpcResponse.Error.invalidRequest()));
+            }
+            for (byte[] response : forwardAll(requests, httpRequest, callerDeadline)) {
+                if (response != null) {
+                    responses.add(response);
+                }
+            }
+        } catch (IOException ex) {
+            log.error("An error occurred when trying to read the request body", ex);
+
+            batch = false;
+            responses = singletonList(errorResponse(null, JsonRpcResponse.Error.parseError()));
+        }
+
+        writeResponses(responses, batch, httpResponse);
+    }
+
+    /**
+     * @return {@link System#nanoTime()} by which the caller wants its response, or {@code null} if it did not say
+     */
+    @Nullable
+    private Long getCallerDeadline(long startTime, HttpServletRequest httpRequest) {
+        String callerTimeout = timeoutHeaderName != null ? httpRequest.getHeader(timeoutHeaderName) : null;
+        if (callerTimeout == null) {
+            return null;
+        }
+        try {
+            return startTime + TimeUnit.MILLISECONDS.toNanos(Long.parseLong(callerTimeout.trim()));
+        } catch (NumberFormatException ex) {
+            log.warn("Ignoring invalid value for header {}: {}", timeoutHeaderName, callerTimeout);
+            return null;
+        }
+    }
+
+    /**
+     * All but the last request are forwarded on {@link #batchExecutor}, while the request thread forwards the last one.
+     *
+     * @return response of each request, in the same order
+     */
+    private List<byte[]> forwardAll(List<RawRequest> requests, HttpServletRequest httpRequest, @Nullable Long callerDeadline)
+            throws IOException {
+
+        List<Future<byte[]>> futures = new ArrayList<>();
+        for (RawRequest request : requests.subList(0, Math.max(0, requests.size() - 1))) {
+            futures.add(batchExecutor.submit(() -> forward(request, httpRequest, callerDeadline)));
+        }
+
+        List<byte[]> responses = new ArrayList<>();
+        if (!requests.isEmpty()) {
+            byte[] lastResponse = forward(requests.get(requests.size() - 1), httpRequest, callerDeadline);
+            for (Future<byte[]> future : futures) {
+                responses.add(getResponse(future));
+            }
+            responses.add(lastResponse);
+        }
+        return responses;
+    }
+
+    @Nullable
+    private static byte[] getResponse(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while forwarding batch request");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * @param request        {@code null} if it is not a request object
+     * @param callerDeadline {@code null} if the caller did not send one
+     * @return {@code null} if there is nothing to respond, i.e. the request is a Notification.
+     */
+    @Nullable
+    private byte[] forward(@Nullable RawRequest request, HttpServletRequest httpRequest, @Nullable Long callerDeadline)
+            throws IOException {
+        if (request == null) {
+            return errorResponse(null, JsonRpcResponse.Error.invalidRequest());
+        }
+        if (request.method == null) {
+            return errorResponse(request, JsonRpcResponse.Error.invalidRequest());
+        }
+
+        BackendPool backendPool = getBackendPool(request.method);
+        if (backendPool == null) {
+            log.error("No route for method: {}", request.method);
+            return request.isNotification() ? null : errorResponse(request, JsonRpcResponse.Error.methodNotFound());
+        }
+
+        byte[] hashKey = backendPool.getHashParam() != null ? request.getParam(jsonFactory, backendPool.getHashParam()) : null;
+        Backend backend = backendPool.choose(hashKey);
+
+        backend.outstanding.incrementAndGet();
+        try {
+            ClientHttpRequest backendRequest = requestFactory.createRequest(backend.uri, HttpMethod.POST);
+            backendRequest.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            for (String headerName : forwardedHeaderNames) {
+                String headerValue = httpRequest.getHeader(headerName);
+                if (headerValue != null) {
+                    backendRequest.getHeaders().set(headerName, headerValue);
+                }
+            }
+            if (callerDeadline != null) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(callerDeadline - System.nanoTime());
+                backendRequest.getHeaders().set(timeoutHeaderName, String.valueOf(Math.max(0, remainingMillis)));
+            }
+            backendRequest.getBody().write(request.body, request.offset, request.length);
+
+            try (ClientHttpResponse backendResponse = backendRequest.execute()) {
+                int statusCode = backendResponse.getRawStatusCode();
+                if (statusCode >= 500) {
+                    throw new IOException("Backend responded with status: " + statusCode);
+                }
+                backend.recordSuccess();
+
+                if (statusCode >= 300) {
+                    // Backend is up, but did not give a JSON-RPC response (e.g. wrong URL)
+                    log.error("Backend {} responded to method {} with status: {}", backend, request.method, statusCode);
+                    return request.isNotification() ? null : errorResponse(request, JsonRpcResponse.Error.internalError());
+                }
+                if (statusCode == HttpStatus.NO_CONTENT.value()) {
+                    return null;
+                }
+                byte[] response = StreamUtils.copyToByteArray(backendResponse.getBody());
+                return response.length == 0 ? null : response;
+            }
+        } catch (IOException ex) {
+            log.error("Failed to forward method {} to backend: {}", request.method, backend, ex);
+            backend.recordFailure(maxConsecutiveFailures, ejectionDuration);
+
+            return request.isNotification() ? null : errorResponse(request, JsonRpcResponse.Error.internalError());
+        } finally {
+            backend.outstanding.decrementAndGet();
+        }
+    }
+
+    @Nullable
+    private BackendPool getBackendPool(String method) {
+        for (BackendPool backendPool : backendPools) {
+            if (backendPool.matches(method)) {
+                return backendPool;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param request {@code null} if it could not be read, in which case the response will have {@code null} id
+     */
+    private byte[] errorResponse(@Nullable RawRequest request, JsonRpcResponse.Error error) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (JsonGenerator generator = jsonFactory.createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeStringField("jsonrpc", "2.0");
+            generator.writeFieldName("id");
+            if (request != null) {
+                request.writeId(generator);
+            } else {
+                generator.writeNull();
+            }
+            generator.writeObjectFieldStart("error");
+            generator.writeNumberField("code", error.getCode());
+            generator.writeStringField("message", error.getMessage());
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static void writeResponses(List<byte[]> responses, boolean batch, HttpServletResponse httpResponse) throws IOException {
+        if (responses.isEmpty()) {
+            httpResponse.setStatus(HttpStatus.NO_CONTENT.value());
+            return;
+        }
+
+        httpResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        OutputStream outputStream = httpResponse.getOutputStream();
+        if (!batch) {
+            outputStream.write(responses.get(0));
+            return;
+        }
+        outputStream.write('[');
+        for (int i = 0; i < responses.size(); i++) {
+            if (i > 0) {
+                outputStream.write(',');
+            }
+            outputStream.write(responses.get(i));
+        }
+        outputStream.write(']');
+    }
+}
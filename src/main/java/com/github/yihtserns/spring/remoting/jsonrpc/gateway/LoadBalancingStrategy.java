@@ -0,0 +1,33 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc.gateway;
+
+/**
+ * How {@link JsonRpcGateway} chooses among the backends of a {@link Route}.
+ */
+public enum LoadBalancingStrategy {
+
+    ROUND_ROBIN,
+    /**
+     * Backend with the fewest requests currently being forwarded to it.
+     */
+    LEAST_OUTSTANDING,
+    /**
+     * Backend chosen by hashing the value of {@link Route#getHashParam()}, so the same value goes to the same backend
+     * (for as long as that backend is healthy).
+     */
+    CONSISTENT_HASH
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc.gateway;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Location of a JSON-RPC request inside the request body, with only the fields needed for routing read out of it -
+ * {@code params} is skipped over, not deserialized.
+ */
+class RawRequest {
+
+    final byte[] body;
+    final int offset;
+    final int length;
+    @Nullable
+    final String method;
+    /**
+     * {@code null} if the request does not have an {@code id}, i.e. it is a Notification.
+     */
+    @Nullable
+    private final JsonToken idToken;
+    @Nullable
+    private final String idText;
+    private final int paramsOffset;
+    private final int paramsLength;
+
+    private RawRequest(byte[] body, int offset, int length,
+                       @Nullable String method,
+                       @Nullable JsonToken idToken, @Nullable String idText,
+                       int paramsOffset, int paramsLength) {
+
+        this.body = body;
+        this.offset = offset;
+        this.length = length;
+        this.method = method;
+        this.idToken = idToken;
+        this.idText = idText;
+        this.paramsOffset = paramsOffset;
+        this.paramsLength = paramsLength;
+    }
+
+    boolean isNotification() {
+        return idToken == null;
+    }
+
+    void writeId(JsonGenerator generator) throws IOException {
+        if (idToken == JsonToken.VALUE_STRING) {
+            generator.writeString(idText);
+        } else if (idToken == JsonToken.VALUE_NUMBER_INT || idToken == JsonToken.VALUE_NUMBER_FLOAT) {
+            generator.writeNumber(idText);
+        } else {
+            generator.writeNull();
+        }
+    }
+
+    /**
+     * @param hashParam index of the param when {@code params} is a JSON array, or its field name when it is a JSON object
+     * @return {@code null} if the request does not have the param
+     */
+    @Nullable
+    byte[] getParam(JsonFactory jsonFactory, String hashParam) throws IOException {
+        if (paramsOffset < 0) {
+            return null;
+        }
+
+        byte[] params = Arrays.copyOfRange(body, paramsOffset, paramsOffset + paramsLength);
+        try (JsonParser parser = jsonFactory.createParser(params)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                int index;
+                try {
+                    index = Integer.parseInt(hashParam);
+                } catch (NumberFormatException ex) {
+                    return null;
+                }
+                for (int i = 0; parser.nextToken() != JsonToken.END_ARRAY; i++) {
+                    if (i == index) {
+                        return readValue(parser, params);
+                    }
+                    parser.skipChildren();
+                }
+            } else {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    boolean found = hashParam.equals(parser.getCurrentName());
+                    parser.nextToken();
+                    if (found) {
+                        return readValue(parser, params);
+                    }
+                    parser.skipChildren();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static byte[] readValue(JsonParser parser, byte[] source) throws IOException {
+        if (parser.currentToken().isScalarValue()) {
+            return parser.getText().getBytes(StandardCharsets.UTF_8);
+        }
+        int start = (int) parser.getTokenLocation().getByteOffset();
+        parser.skipChildren();
+        int end = (int) parser.getCurrentLocation().getByteOffset();
+
+        return Arrays.copyOfRange(source, start, end);
+    }
+
+    /**
+     * @param parser positioned at the {@link JsonToken#START_OBJECT} of the request, will be positioned at its
+     *               {@link JsonToken#END_OBJECT} when this returns
+     */
+    static RawRequest read(JsonParser parser, byte[] body) throws IOException {
+        int offset = (int) parser.getTokenLocation().getByteOffset();
+        String method = null;
+        JsonToken idToken = null;
+        String idText = null;
+        int paramsOffset = -1;
+        int paramsLength = -1;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            switch (fieldName) {
+                case "method":
+                    method = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    break;
+                case "id":
+                    idToken = value;
+                    idText = value.isScalarValue() ? parser.getText() : null;
+                    break;
+                case "params":
+                    if (value.isStructStart()) {
+                        paramsOffset = (int) parser.getTokenLocation().getByteOffset();
+                        parser.skipChildren();
+                        paramsLength = (int) parser.getCurrentLocation().getByteOffset() - paramsOffset;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            parser.skipChildren();
+        }
+        int length = (int) parser.getCurrentLocation().getByteOffset() - offset;
+
+        return new RawRequest(body, offset, length, method, idToken, idText, paramsOffset, paramsLength);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc.gateway;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Forwarding rule of {@link JsonRpcGateway}.
+ */
+@Getter
+@Setter
+public class Route {
+
+    /**
+     * Method name, can use {@code *} as wildcard (e.g. {@code calc*}).
+     */
+    private String methodPattern;
+    /**
+     * URLs of the backend JSON-RPC endpoints.
+     */
+    private List<String> backends = emptyList();
+    private LoadBalancingStrategy strategy = LoadBalancingStrategy.ROUND_ROBIN;
+    /**
+     * For {@link LoadBalancingStrategy#CONSISTENT_HASH}: index of the param to hash when {@code params} is a JSON array,
+     * or its field name when {@code params} is a JSON object.
+     */
+    private String hashParam;
+}
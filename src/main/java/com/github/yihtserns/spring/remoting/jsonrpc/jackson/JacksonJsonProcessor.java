@@ -23,6 +23,7 @@ import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import com.github.yihtserns.spring.remoting.jsonrpc.ExecutionContext;
 import com.github.yihtserns.spring.remoting.jsonrpc.JsonProcessor;
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcNotification;
 import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcRequest;
 import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcResponse;
 
@@ -113,6 +114,11 @@ public class JacksonJsonProcessor implements JsonProcessor {
         writer.writeValue(outputStream, response);
     }
 
+    @Override
+    public void processNotification(JsonRpcNotification notification, OutputStream outputStream) throws IOException {
+        writer.writeValue(outputStream, notification);
+    }
+
     public static JacksonJsonProcessor from(ObjectMapper objectMapperPrototype) {
         SimpleModule adhocModule = new SimpleModule();
         adhocModule.addDeserializer(JsonRpcRequest.Id.class, new JsonRpcRequestIdDeserializer());
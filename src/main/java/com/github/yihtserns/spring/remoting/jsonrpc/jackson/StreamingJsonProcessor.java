@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) RevTech Lab Sdn Bhd - All Rights Reserved.
+ * Unauthorized copying of this file, via any medium is strictly prohibited.
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc.jackson;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.NumberDeserializers;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.github.yihtserns.spring.remoting.jsonrpc.ExecutionContext;
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonProcessor;
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcNotification;
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcRequest;
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Faster alternative to {@link JacksonJsonProcessor}, producing the same results:
+ * <ul>
+ *     <li>Reads & writes the JSON-RPC envelope using Jackson's streaming API instead of data-binding.</li>
+ *     <li>Buffers {@code params} as tokens instead of a {@code JsonNode} tree.</li>
+ *     <li>Prepares a reader for each method parameter the first time the method is called: {@code String}, {@code int},
+ *     {@code long}, {@code double} & {@code boolean} (and their wrappers) are read straight from the token when the
+ *     {@code ObjectMapper} resolves them to Jackson's own deserializer, everything else (a custom deserializer, or a
+ *     token that needs coercion) falls back to a Jackson reader already resolved for the parameter type.</li>
+ * </ul>
+ * The {@code result} (& {@code error}) is still written using Jackson data-binding, looking up the serializer by the
+ * runtime type of each value (like {@link JacksonJsonProcessor}) - there is no writer specialized for return types.
+ *
+ * @author yihtserns
+ */
+public class StreamingJsonProcessor implements JsonProcessor {
+
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final DefaultDeserializationContext deserializationContext;
+    private final Map<Method, ParamReader[]> method2ParamReaders = new ConcurrentHashMap<>();
+
+    /**
+     * @see #from(ObjectMapper)
+     */
+    private StreamingJsonProcessor(ObjectReader reader, ObjectWriter writer, DefaultDeserializationContext deserializationContext) {
+        this.reader = reader;
+        this.writer = writer;
+        this.deserializationContext = deserializationContext;
+    }
+
+    @Override
+    public JsonRpcRequest<TokenBuffer> processRequest(InputStream inputStream) throws IOException {
+        try (JsonParser parser = reader.createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected request to be a JSON object, but was: " + parser.currentToken());
+            }
+
+            JsonRpcRequest<TokenBuffer> request = new JsonRpcRequest<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+
+                switch (fieldName) {
+                    case "jsonrpc":
+                        request.setJsonrpc(readString(parser));
+                        break;
+                    case "method":
+                        request.setMethod(readString(parser));
+                        break;
+                    case "id":
+                        request.setId(readId(parser));
+                        break;
+                    case "params":
+                        if (value == JsonToken.VALUE_NULL) {
+                            request.setParams(null);
+                        } else {
+                            TokenBuffer params = new TokenBuffer(parser);
+                            params.copyCurrentStructure(parser);
+                            request.setParams(params);
+                        }
+                        break;
+                    default:
+                        throw new JsonParseException(parser, "Unrecognized field: " + fieldName);
+                }
+            }
+            return request;
+        }
+    }
+
+    private static String readString(JsonParser parser) throws IOException {
+        if (parser.hasToken(JsonToken.VALUE_NULL)) {
+            return null;
+        }
+        if (!parser.currentToken().isScalarValue()) {
+            throw new JsonParseException(parser, "Expected " + parser.getCurrentName() + " to be a string, but was: " + parser.currentToken());
+        }
+        return parser.getText();
+    }
+
+    private static JsonRpcRequest.Id readId(JsonParser parser) throws IOException {
+        if (parser.hasToken(JsonToken.VALUE_STRING)) {
+            return JsonRpcRequest.Id.valueOf(parser.getText());
+        }
+        if (parser.hasToken(JsonToken.VALUE_NUMBER_INT)) {
+            return JsonRpcRequest.Id.valueOf(parser.getIntValue());
+        }
+        if (parser.hasToken(JsonToken.VALUE_NULL)) {
+            return JsonRpcRequest.Id.nullValue();
+        }
+        throw new JsonParseException(parser, "Expected id to be a string or an integer, but was: " + parser.currentToken());
+    }
+
+    @Override
+    public List<Object> processParamsIntoMethodArguments(ExecutionContext executionContext) throws IOException {
+        TokenBuffer params = (TokenBuffer) executionContext.getRequest().getParams();
+        if (params == null) {
+            return new ArrayList<>(0);
+        }
+
+        Method method = executionContext.getServiceInterfaceMethod();
+        ParamReader[] paramReaders = method2ParamReaders.computeIfAbsent(method, this::createParamReaders);
+
+        try (JsonParser parser = params.asParser(reader)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                // The whole object is the only argument
+                List<Object> methodArguments = new ArrayList<>(1);
+                methodArguments.add(paramReaders.length > 0 ? readParam(paramReaders, 0, parser) : null);
+
+                return methodArguments;
+            }
+            if (token != JsonToken.START_ARRAY) { // Unsupported params type
+                return null;
+            }
+
+            List<Object> methodArguments = new ArrayList<>(paramReaders.length);
+            for (int i = 0; parser.nextToken() != JsonToken.END_ARRAY; i++) {
+                if (i < paramReaders.length) {
+                    methodArguments.add(readParam(paramReaders, i, parser));
+                } else {
+                    parser.skipChildren();
+                    methodArguments.add(null); // Extra param, only counted to be rejected
+                }
+            }
+            return methodArguments;
+        }
+    }
+
+    private static Object readParam(ParamReader[] paramReaders, int index, JsonParser parser) {
+        try {
+            return paramReaders[index].read(parser);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(String.format("Failed to convert params #%s to argument [%s]", index, paramReaders[index]), ex);
+        }
+    }
+
+    private ParamReader[] createParamReaders(Method method) {
+        Type[] parameterTypes = method.getGenericParameterTypes();
+        ParamReader[] paramReaders = new ParamReader[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            paramReaders[i] = createParamReader(parameterTypes[i], method.getParameters()[i].toString());
+        }
+        return paramReaders;
+    }
+
+    private ParamReader createParamReader(Type type, String description) {
+        JavaType javaType = reader.getTypeFactory().constructType(type);
+        ObjectReader typeReader = reader.forType(javaType);
+        Class<?> deserializerClass = findDeserializerClass(javaType);
+
+        if (type == String.class && deserializerClass == StringDeserializer.class) {
+            return new ParamReader(description, typeReader) {
+                @Override
+                Object read(JsonParser parser) throws IOException {
+                    if (parser.hasToken(JsonToken.VALUE_STRING)) {
+                        return parser.getText();
+                    }
+                    return super.read(parser);
+                }
+            };
+        }
+        if ((type == int.class || type == Integer.class) && deserializerClass == NumberDeserializers.IntegerDeserializer.class) {
+            return new ParamReader(description, typeReader) {
+                @Override
+                Object read(JsonParser parser) throws IOException {
+                    if (parser.hasToken(JsonToken.VALUE_NUMBER_INT) && parser.getNumberType() == JsonParser.NumberType.INT) {
+                        return parser.getIntValue();
+                    }
+                    return super.read(parser);
+                }
+            };
+        }
+        if ((type == long.class || type == Long.class) && deserializerClass == NumberDeserializers.LongDeserializer.class) {
+            return new ParamReader(description, typeReader) {
+                @Override
+                Object read(JsonParser parser) throws IOException {
+                    if (parser.hasToken(JsonToken.VALUE_NUMBER_INT) && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+                        return parser.getLongValue();
+                    }
+                    return super.read(parser);
+                }
+            };
+        }
+        if ((type == double.class || type == Double.class) && deserializerClass == NumberDeserializers.DoubleDeserializer.class) {
+            return new ParamReader(description, typeReader) {
+                @Override
+                Object read(JsonParser parser) throws IOException {
+                    if (parser.hasToken(JsonToken.VALUE_NUMBER_FLOAT)) {
+                        return parser.getDoubleValue();
+                    }
+                    return super.read(parser);
+                }
+            };
+        }
+        if ((type == boolean.class || type == Boolean.class) && deserializerClass == NumberDeserializers.BooleanDeserializer.class) {
+            return new ParamReader(description, typeReader) {
+                @Override
+                Object read(JsonParser parser) throws IOException {
+                    if (parser.currentToken().isBoolean()) {
+                        return parser.getBooleanValue();
+                    }
+                    return super.read(parser);
+                }
+            };
+        }
+        return new ParamReader(description, typeReader);
+    }
+
+    /**
+     * @return class of the deserializer the {@code ObjectMapper} uses for the type, or {@code null} if it cannot be resolved
+     */
+    private Class<?> findDeserializerClass(JavaType javaType) {
+        try {
+            JsonDeserializer<Object> deserializer = deserializationContext.createDummyInstance(reader.getConfig())
+                    .findRootValueDeserializer(javaType);
+            return deserializer.getClass();
+        } catch (IOException ex) {
+            return null; // Let the Jackson reader report it when reading the param
+        }
+    }
+
+    @Override
+    public void processResponse(JsonRpcResponse response, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = writer.createGenerator(outputStream)) {
+            generator.writeStartObject();
+
+            generator.writeStringField("jsonrpc", response.getJsonrpc());
+            generator.writeFieldName("id");
+            response.getId().map(stringId -> {
+                        generator.writeString(stringId);
+                        return null;
+                    },
+                    numberId -> {
+                        generator.writeNumber(numberId);
+                        return null;
+                    },
+                    () -> {
+                        generator.writeNull();
+                        return null;
+                    });
+            response.getResult().map(
+                    result -> {
+                        generator.writeFieldName("result");
+                        writer.writeValue(generator, result);
+                        return null;
+                    },
+                    error -> {
+                        generator.writeFieldName("error");
+                        writer.writeValue(generator, error);
+                        return null;
+                    });
+
+            generator.writeEndObject();
+        }
+    }
+
+    @Override
+    public void processNotification(JsonRpcNotification notification, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = writer.createGenerator(outputStream)) {
+            generator.writeStartObject();
+
+            generator.writeStringField("jsonrpc", notification.getJsonrpc());
+            generator.writeStringField("method", notification.getMethod());
+            generator.writeFieldName("params");
+            writer.writeValue(generator, notification.getParams());
+
+            generator.writeEndObject();
+        }
+    }
+
+    public static StreamingJsonProcessor from(ObjectMapper objectMapperPrototype) {
+        ObjectMapper objectMapper = objectMapperPrototype.copy()
+                .enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES) // KLUDGE: Spring/Boot set FAIL_ON_UNKNOWN_PROPERTIES to false by default
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+        // Flushing after writing the result would flush the (unfinished) response
+        return new StreamingJsonProcessor(
+                objectMapper.reader(),
+                objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE),
+                (DefaultDeserializationContext) objectMapper.getDeserializationContext());
+    }
+
+    /**
+     * Reads a single method argument, by default using Jackson data-binding.
+     */
+    private static class ParamReader {
+
+        private final String description;
+        private final ObjectReader typeReader;
+
+        ParamReader(String description, ObjectReader typeReader) {
+            this.description = description;
+            this.typeReader = typeReader;
+        }
+
+        /**
+         * @param parser positioned at the first token of the param value
+         */
+        Object read(JsonParser parser) throws IOException {
+            return typeReader.readValue(parser);
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+}
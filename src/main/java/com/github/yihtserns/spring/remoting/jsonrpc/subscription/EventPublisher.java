@@ -0,0 +1,42 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc.subscription;
+
+/**
+ * Return type for service methods that push events to the client instead of returning a single result.
+ * <p>
+ * Should not start producing events until {@link #subscribe(EventSubscriber)} is called, because identical
+ * subscriptions share a single {@link EventPublisher} - the ones returned for the rest are discarded. Events published
+ * during {@code subscribe} therefore only reach the first of those subscriptions, the rest only get the latest event
+ * (see {@link SubscriptionHub#setReplayLatestEvent(boolean)}) & those published after they subscribed.
+ * </p>
+ *
+ * @param <T> event type
+ */
+@FunctionalInterface
+public interface EventPublisher<T> {
+
+    /**
+     * @return to stop publishing events to the given subscriber
+     */
+    Subscription subscribe(EventSubscriber<? super T> subscriber);
+
+    @FunctionalInterface
+    interface Subscription {
+
+        void cancel();
+    }
+}
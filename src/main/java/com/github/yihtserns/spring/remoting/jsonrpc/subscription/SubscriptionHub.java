@@ -0,0 +1,623 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc.subscription;
+
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonProcessor;
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcNotification;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Streams events of {@link EventPublisher}s to clients as
+ * <a href="https://html.spec.whatwg.org/multipage/server-sent-events.html">Server-Sent Events</a>, each event being a
+ * JSON-RPC Notification named after the subscribed method, with the event as its only param.
+ * <p>
+ * Identical subscriptions share a single topic: the publisher is only subscribed to once, each event is only written
+ * as JSON once, and the result is copied into every subscriber's buffer. A subscriber whose buffer stays above
+ * {@link #bufferCapacity} for longer than {@link #maxBacklogDuration}, or reaches {@link #maxBufferedEvents} (i.e.
+ * cannot keep up with the events) is disconnected, so that it cannot hold back the publisher or the other subscribers.
+ * </p>
+ * <p>
+ * As the publisher is only subscribed to by the first subscriber of a topic, whatever it publishes while subscribing
+ * (e.g. its current state) only reaches that subscriber - so the latest event of a topic is replayed to each subscriber
+ * joining it later, unless {@link #replayLatestEvent} is turned off.
+ * </p>
+ * <p>
+ * Each subscriber is written to by a background thread using non-blocking servlet output: a client that stops reading
+ * does not hold on to a thread, it only gets its buffer filled up.
+ * </p>
+ */
+@Slf4j
+public class SubscriptionHub implements InitializingBean, DisposableBean {
+
+    private static final byte[] DATA_FIELD = "data: ".getBytes(StandardCharsets.UTF_8);
+
+    private final Map<Object, Topic> key2Topic = new ConcurrentHashMap<>();
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    /**
+     * Events waiting to be written to a subscriber, beyond which the subscriber is considered to be falling behind.
+     */
+    @Setter
+    private int bufferCapacity = 256;
+    /**
+     * How long a subscriber may keep falling behind before it is disconnected, so that a burst of events does not
+     * disconnect a subscriber that would have caught up.
+     */
+    @Setter
+    private Duration maxBacklogDuration = Duration.ofSeconds(5);
+    /**
+     * Events waiting to be written to a subscriber, beyond which the subscriber is disconnected right away, to bound the
+     * memory held for a subscriber during {@link #maxBacklogDuration}.
+     */
+    @Setter
+    private int maxBufferedEvents = 4096;
+    /**
+     * Maximum duration of an event stream, after which it is ended (the client is expected to subscribe again).
+     */
+    @Setter
+    private Duration streamTimeout = Duration.ofMinutes(30);
+    /**
+     * Used to write events to subscribers. Will create (and later shut down) its own if not set.
+     */
+    @Setter
+    private ExecutorService writerExecutor;
+    private boolean ownWriterExecutor = false;
+    /**
+     * For the executor created when {@link #writerExecutor} is not set, i.e. the maximum number of subscribers being
+     * written to at the same time. Writing does not wait for the client, so there is no need for more than the CPUs.
+     */
+    @Setter
+    private int writerThreadCount = Runtime.getRuntime().availableProcessors();
+    /**
+     * Whether to send the latest event of a topic to subscribers joining it after the event was published. Turn off if
+     * the events are not state (e.g. each is a separate occurrence) - later subscribers will then only receive events
+     * published after they joined.
+     */
+    @Setter
+    private boolean replayLatestEvent = true;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (bufferCapacity < 1) {
+            throw new IllegalArgumentException("Property 'bufferCapacity' must be at least 1, but was: " + bufferCapacity);
+        }
+        if (maxBufferedEvents < bufferCapacity) {
+            throw new IllegalArgumentException(String.format(
+                    "Property 'maxBufferedEvents' must be at least 'bufferCapacity' (%s), but was: %s",
+                    bufferCapacity,
+                    maxBufferedEvents));
+        }
+        if (maxBacklogDuration == null) {
+            throw new IllegalArgumentException("Property 'maxBacklogDuration' is required");
+        }
+        if (streamTimeout == null) {
+            throw new IllegalArgumentException("Property 'streamTimeout' is required");
+        }
+
+        if (writerExecutor == null) {
+            if (writerThreadCount < 1) {
+                throw new IllegalArgumentException("Property 'writerThreadCount' must be at least 1, but was: " + writerThreadCount);
+            }
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("jsonrpc-subscription-");
+            threadFactory.setDaemon(true);
+
+            // Each subscriber has at most 1 drain waiting in the queue
+            ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
+                    writerThreadCount,
+                    writerThreadCount,
+                    60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    threadFactory);
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+
+            writerExecutor = threadPoolExecutor;
+            ownWriterExecutor = true;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (Topic topic : new ArrayList<>(key2Topic.values())) {
+            topic.close();
+        }
+        if (ownWriterExecutor) {
+            writerExecutor.shutdown(); // Let subscribers finish writing what they have
+        }
+    }
+
+    /**
+     * Switches the given request to asynchronous mode & streams events to it until the publisher completes, the client
+     * disconnects, or the client cannot keep up with the events.
+     *
+     * @param key       identifies identical subscriptions, so needs to implement {@code equals} & {@code hashCode}
+     * @param method    name of the Notifications
+     * @param publisher ignored if there is already a topic for the given key
+     * @throws IOException if the client has disconnected
+     */
+    public void subscribe(Object key,
+                          String method,
+                          EventPublisher<?> publisher,
+                          JsonProcessor jsonProcessor,
+                          HttpServletRequest httpRequest,
+                          HttpServletResponse httpResponse) throws IOException {
+
+        // Joins before the event stream starts, so that subscribing can still fail with a JSON-RPC error response
+        Subscriber subscriber = new Subscriber();
+        while (true) {
+            Topic topic = key2Topic.computeIfAbsent(key, k -> new Topic(k, method, jsonProcessor));
+            if (topic.join(subscriber, publisher)) {
+                break;
+            }
+            // Closed before we could join, start a new one
+        }
+
+        try {
+            startEventStream(subscriber, httpRequest, httpResponse);
+        } catch (IOException | RuntimeException ex) {
+            subscriber.leave();
+            throw ex;
+        }
+    }
+
+    private void startEventStream(Subscriber subscriber,
+                                  HttpServletRequest httpRequest,
+                                  HttpServletResponse httpResponse) throws IOException {
+
+        AsyncContext asyncContext = httpRequest.startAsync(httpRequest, httpResponse);
+        try {
+            asyncContext.setTimeout(streamTimeout.toMillis());
+
+            httpResponse.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE);
+            httpResponse.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            httpResponse.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            httpResponse.flushBuffer();
+
+            asyncContext.addListener(subscriber);
+            subscriber.start(asyncContext, httpResponse.getOutputStream());
+        } catch (IOException | RuntimeException ex) {
+            asyncContext.complete();
+            throw ex;
+        }
+    }
+
+    /**
+     * Ends the event streams of the subscriptions whose key matches, once the events already buffered have been written,
+     * e.g. because their publisher's implementation has been replaced. Clients are expected to subscribe again.
+     */
+    public void endSubscriptions(Predicate<Object> keyFilter) {
+        for (Topic topic : new ArrayList<>(key2Topic.values())) {
+            if (keyFilter.test(topic.key)) {
+                topic.close();
+            }
+        }
+    }
+
+    /**
+     * @return number of distinct subscriptions
+     */
+    public int getTopicCount() {
+        return key2Topic.size();
+    }
+
+    public int getSubscriberCount() {
+        int subscriberCount = 0;
+        for (Topic topic : key2Topic.values()) {
+            subscriberCount += topic.subscribers.size();
+        }
+        return subscriberCount;
+    }
+
+    /**
+     * @return number of subscribers disconnected for not keeping up with the events
+     */
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    private static byte[] toEventStreamFrame(byte[] json) {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(json.length + DATA_FIELD.length + 2);
+        frame.write(DATA_FIELD, 0, DATA_FIELD.length);
+        for (byte b : json) {
+            if (b == '\n') { // E.g. pretty-printed JSON - each line needs to be a separate data field
+                frame.write('\n');
+                frame.write(DATA_FIELD, 0, DATA_FIELD.length);
+            } else if (b != '\r') {
+                frame.write(b);
+            }
+        }
+        frame.write('\n');
+        frame.write('\n');
+
+        return frame.toByteArray();
+    }
+
+    private class Topic implements EventSubscriber<Object> {
+
+        private final Object key;
+        private final String method;
+        private final JsonProcessor jsonProcessor;
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        /**
+         * Held while sending an event to the subscribers, so that a subscriber joining at the same time either gets it
+         * as {@link #latestFrame} or as it is sent, but not both.
+         */
+        private final Object sendLock = new Object();
+        private byte[] latestFrame;
+        private volatile EventPublisher.Subscription upstreamSubscription;
+        private boolean connected = false;
+        private boolean closed = false;
+
+        Topic(Object key, String method, JsonProcessor jsonProcessor) {
+            this.key = key;
+            this.method = method;
+            this.jsonProcessor = jsonProcessor;
+        }
+
+        /**
+         * Subscribes to the publisher if this is the first subscriber, after adding the subscriber so that it receives
+         * events published while subscribing. Otherwise, sends the latest event to the subscriber (if
+         * {@link #replayLatestEvent}).
+         *
+         * @return {@code false} if this topic has been closed
+         */
+        synchronized boolean join(Subscriber subscriber, EventPublisher<?> publisher) {
+            if (closed) {
+                return false;
+            }
+            subscriber.topic = this;
+
+            if (connected) {
+                synchronized (sendLock) {
+                    subscribers.add(subscriber);
+                    if (latestFrame != null) {
+                        subscriber.send(latestFrame); // Cannot fall behind with an empty buffer
+                    }
+                }
+                return true;
+            }
+
+            subscribers.add(subscriber);
+            connected = true;
+            try {
+                upstreamSubscription = publisher.subscribe(this);
+            } catch (RuntimeException ex) {
+                subscribers.remove(subscriber);
+                close();
+                throw ex;
+            }
+            return true;
+        }
+
+        void remove(Subscriber subscriber) {
+            subscribers.remove(subscriber);
+            closeIfUnused();
+        }
+
+        void closeIfUnused() {
+            synchronized (this) {
+                if (closed || !subscribers.isEmpty()) {
+                    return;
+                }
+                closed = true;
+                key2Topic.remove(key, this);
+            }
+            cancelUpstreamSubscription();
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                key2Topic.remove(key, this);
+            }
+            // Outside of the lock, in case the publisher holds its own lock when calling onEvent/onComplete
+            cancelUpstreamSubscription();
+            for (Subscriber subscriber : subscribers) {
+                subscriber.finish();
+            }
+        }
+
+        private void cancelUpstreamSubscription() {
+            EventPublisher.Subscription subscription = upstreamSubscription;
+            if (subscription != null) {
+                try {
+                    subscription.cancel();
+                } catch (RuntimeException ex) {
+                    log.warn("Failed to cancel subscription: {}", key, ex);
+                }
+            }
+        }
+
+        @Override
+        public void onEvent(Object event) {
+            if (subscribers.isEmpty()) {
+                return;
+            }
+
+            byte[] frame;
+            try {
+                ByteArrayOutputStream json = new ByteArrayOutputStream();
+                jsonProcessor.processNotification(new JsonRpcNotification(method, singletonList(event)), json);
+                frame = toEventStreamFrame(json.toByteArray());
+            } catch (Exception ex) {
+                log.error("Failed to write event of subscription: {}", key, ex);
+                return;
+            }
+            List<Subscriber> fallenBehind = null;
+            synchronized (sendLock) {
+                if (replayLatestEvent) {
+                    latestFrame = frame;
+                }
+                for (Subscriber subscriber : subscribers) {
+                    if (!subscriber.send(frame)) {
+                        if (fallenBehind == null) {
+                            fallenBehind = new ArrayList<>();
+                        }
+                        fallenBehind.add(subscriber);
+                    }
+                }
+            }
+            if (fallenBehind != null) {
+                // Outside of the send lock, as leaving the topic needs the topic lock, which is held while joining
+                for (Subscriber subscriber : fallenBehind) {
+                    evictedCount.incrementAndGet();
+                    log.warn("Disconnecting subscriber of {} for not keeping up with the events", key);
+                    subscriber.evict();
+                }
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            close();
+        }
+    }
+
+    private class Subscriber implements AsyncListener, WriteListener {
+
+        private final BlockingQueue<byte[]> buffer = new LinkedBlockingQueue<>(maxBufferedEvents);
+        /**
+         * Drains requested but not yet done, so that a request made while draining (e.g. by {@link #onWritePossible()})
+         * makes the draining thread go through the buffer again.
+         */
+        private final AtomicInteger drainRequests = new AtomicInteger();
+        /**
+         * Response has been ended.
+         */
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile Topic topic;
+        private volatile AsyncContext asyncContext;
+        private volatile ServletOutputStream outputStream;
+        /**
+         * When the buffer went above {@link #bufferCapacity}, if {@link #backlogged}.
+         */
+        private volatile long backlogStartNanos;
+        private volatile boolean backlogged = false;
+        /**
+         * No more events will be buffered.
+         */
+        private volatile boolean finished = false;
+        /**
+         * Buffered events will not be written either.
+         */
+        private volatile boolean discarded = false;
+        /**
+         * Written but not yet flushed. Only used while draining.
+         */
+        private boolean unflushed = false;
+
+        /**
+         * Starts writing the events buffered so far & those that come after, once the container says the response can be
+         * written to.
+         */
+        void start(AsyncContext asyncContext, ServletOutputStream outputStream) {
+            this.outputStream = outputStream;
+            this.asyncContext = asyncContext;
+            outputStream.setWriteListener(this);
+        }
+
+        /**
+         * @return {@code false} if the subscriber cannot keep up with the events, i.e. needs to be {@link #evict()}ed
+         */
+        boolean send(byte[] frame) {
+            if (finished) {
+                return true;
+            }
+            if (!buffer.offer(frame) || (buffer.size() > bufferCapacity && hasFallenBehindTooLong())) {
+                // Stop buffering & writing until evicted
+                discarded = true;
+                finished = true;
+                return false;
+            }
+            requestDrain();
+            return true;
+        }
+
+        private boolean hasFallenBehindTooLong() {
+            long now = System.nanoTime();
+            if (!backlogged) {
+                backlogStartNanos = now;
+                backlogged = true;
+                return false;
+            }
+            return now - backlogStartNanos >= maxBacklogDuration.toNanos();
+        }
+
+        /**
+         * Stops receiving events & ends the response, without writing those already buffered.
+         */
+        void evict() {
+            leave();
+            completeResponse();
+        }
+
+        /**
+         * Stops receiving events without writing those already buffered.
+         */
+        void leave() {
+            discarded = true;
+            buffer.clear();
+            finish();
+
+            Topic topic = this.topic;
+            if (topic != null) {
+                topic.remove(this);
+            }
+        }
+
+        /**
+         * Stops receiving events, ending the response once those already buffered have been written.
+         */
+        void finish() {
+            finished = true;
+            requestDrain();
+        }
+
+        private void completeResponse() {
+            AsyncContext asyncContext = this.asyncContext;
+            if (asyncContext != null && completed.compareAndSet(false, true)) {
+                try {
+                    asyncContext.complete();
+                } catch (IllegalStateException ex) {
+                    log.debug("Response of subscriber has already been ended", ex);
+                }
+            }
+        }
+
+        private void requestDrain() {
+            if (asyncContext == null) {
+                return; // Not started yet, will drain once started
+            }
+            if (drainRequests.getAndIncrement() == 0) {
+                try {
+                    writerExecutor.execute(this::drain);
+                } catch (RejectedExecutionException ex) { // Shutting down
+                    drainRequests.set(0);
+                }
+            }
+        }
+
+        private void drain() {
+            int requests = drainRequests.get();
+            do {
+                try {
+                    write();
+                } catch (IOException | RuntimeException ex) {
+                    log.debug("Disconnecting subscriber that can no longer be written to", ex);
+                    evict();
+                }
+                requests = drainRequests.addAndGet(-requests);
+            } while (requests != 0);
+        }
+
+        /**
+         * Writes until the buffer is empty or the response cannot take more without blocking, in which case the
+         * container will call {@link #onWritePossible()} once it can.
+         */
+        private void write() throws IOException {
+            if (discarded) {
+                return;
+            }
+            byte[] frame;
+            while (outputStream.isReady() && (frame = buffer.poll()) != null) {
+                outputStream.write(frame);
+                unflushed = true;
+
+                if (backlogged && buffer.size() <= bufferCapacity) {
+                    backlogged = false; // Caught up
+                }
+            }
+            if (unflushed && outputStream.isReady()) {
+                outputStream.flush();
+                unflushed = false;
+            }
+            if (finished && buffer.isEmpty() && !unflushed && outputStream.isReady()) {
+                completeResponse();
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            requestDrain();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            log.debug("Disconnecting subscriber that can no longer be written to", error);
+            evict();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            completed.set(true);
+            if (!finished) {
+                leave();
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            log.debug("Ending event stream of {} that has reached its timeout", topic.key);
+            evict();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            evict();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
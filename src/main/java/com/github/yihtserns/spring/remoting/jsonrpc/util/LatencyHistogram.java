@@ -0,0 +1,97 @@
+/*
+ * Copyright 2022 yihtserns.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.yihtserns.spring.remoting.jsonrpc.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of non-negative values (e.g. latency in nanoseconds), in the style of HdrHistogram: buckets are
+ * linear within each power of 2, so any recorded value is reported within 1/64 (~1.6%) of its actual value, using a
+ * fixed amount of memory regardless of how many values are recorded.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_HALF_BITS = 6;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_BITS;
+    private static final int SUB_BUCKET_COUNT = SUB_BUCKET_HALF_COUNT * 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(Long.MAX_VALUE) + 1);
+
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative, but was: " + value);
+        }
+        counts.incrementAndGet(index(value));
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @param percentile between 0 & 100, e.g. {@code 99.9}
+     * @return (upper bound of) the value at the given percentile, or {@code 0} if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long targetCount = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+
+        long accumulatedCount = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            accumulatedCount += counts.get(i);
+            if (accumulatedCount >= targetCount) {
+                return highestValueOf(i);
+            }
+        }
+        return highestValueOf(counts.length() - 1);
+    }
+
+    public long getMaxValue() {
+        for (int i = counts.length() - 1; i >= 0; i--) {
+            if (counts.get(i) > 0) {
+                return highestValueOf(i);
+            }
+        }
+        return 0;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_HALF_BITS;
+
+        return (shift << SUB_BUCKET_HALF_BITS) + (int) (value >>> shift);
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >> SUB_BUCKET_HALF_BITS) - 1;
+        long subBucket = index - ((long) shift << SUB_BUCKET_HALF_BITS);
+        long highestValue = ((subBucket + 1) << shift) - 1;
+
+        return highestValue < 0 ? Long.MAX_VALUE : highestValue; // Overflowed at the very last bucket
+    }
+}
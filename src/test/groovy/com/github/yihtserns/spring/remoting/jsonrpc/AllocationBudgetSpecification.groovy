@@ -0,0 +1,74 @@
+package com.github.yihtserns.spring.remoting.jsonrpc
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.yihtserns.spring.remoting.jsonrpc.jackson.JacksonJsonProcessor
+import spock.lang.Requires
+import spock.lang.Shared
+import spock.lang.Specification
+
+/**
+ * Bytes allocated per request by {@link JsonRpcServiceExporter} & {@link JacksonJsonProcessor}, so that changes (e.g.
+ * library upgrades) that significantly increase GC pressure fail the build.
+ * <p>
+ * Budgets are roughly 1.5x what was measured, to absorb JIT & JDK differences. When a budget is exceeded on purpose,
+ * update it using the measurement shown by the failed condition.
+ * </p>
+ */
+@Requires({ RequestAllocationMeter.supported })
+class AllocationBudgetSpecification extends Specification {
+
+    @Shared
+    private ObjectMapper objectMapper = new ObjectMapper()
+    @Shared
+    private JsonProcessor jsonProcessor = JacksonJsonProcessor.from(objectMapper)
+    @Shared
+    private CalcService calcService = new CalcServiceImpl()
+    private RequestAllocationMeter meter = new RequestAllocationMeter()
+
+    def "#shape should stay within allocation budget of each stage"() {
+        given:
+        def request = objectMapper.writeValueAsBytes([jsonrpc: "2.0", id: 1, method: method, params: params])
+
+        when:
+        def stage2AllocatedBytes = meter.measureStages(jsonProcessor, CalcService, calcService, request)
+
+        then:
+        stage2AllocatedBytes.parse <= parseBudget
+        stage2AllocatedBytes.bind <= bindBudget
+        stage2AllocatedBytes.invoke <= invokeBudget
+        stage2AllocatedBytes.serialize <= serializeBudget
+
+        where:
+        shape          | method                 | params                                                     | parseBudget | bindBudget | invokeBudget | serializeBudget
+        "int params"   | "subtractArray"        | [10, 3]                                                    | 20_000      | 1_500      | 256          | 1_024
+        "string param" | "returnStringArg"      | ["Expected Param Value"]                                   | 20_000      | 1_024      | 256          | 1_024
+        "object param" | "subtractObject"       | [firstValue: 10, secondValue: 3]                           | 20_000      | 1_024      | 256          | 1_024
+        "large params" | "returnStringArrayArg" | [(1..1000).collect { "Value ${it}".toString() }]           | 150_000     | 16_000     | 256          | 1_024
+    }
+
+    def "#shape should stay within allocation budget of the whole request"() {
+        given:
+        def exporter = new JsonRpcServiceExporter(
+                serviceInterface: CalcService,
+                service: calcService,
+                jsonProcessor: jsonProcessor)
+        exporter.afterPropertiesSet()
+        def request = objectMapper.writeValueAsBytes([jsonrpc: "2.0", id: 1, method: method, params: params])
+
+        when:
+        def allocatedBytes = meter.measureHandleRequest(exporter, request)
+
+        then: "budget includes writing into the growing mock response body"
+        allocatedBytes <= budget
+
+        cleanup:
+        exporter.destroy()
+
+        where:
+        shape          | method                 | params                                                     | budget
+        "int params"   | "subtractArray"        | [10, 3]                                                    | 32_000
+        "string param" | "returnStringArg"      | ["Expected Param Value"]                                   | 32_000
+        "object param" | "subtractObject"       | [firstValue: 10, secondValue: 3]                           | 32_000
+        "large params" | "returnStringArrayArg" | [(1..1000).collect { "Value ${it}".toString() }]           | 200_000
+    }
+}
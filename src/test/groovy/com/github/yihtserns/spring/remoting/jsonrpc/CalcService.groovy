@@ -126,4 +126,8 @@ interface CalcService {
     void throwError()
 
     void throwCustomApplicationException(int errorCode) throws CustomApplicationException
+
+    boolean sleep(long millis)
+
+    Long returnRemainingTimeMillis()
 }
@@ -442,4 +442,19 @@ class CalcServiceImpl implements CalcService {
     void throwCustomApplicationException(int errorCode) throws CustomApplicationException {
         throw new CustomApplicationException(errorCode)
     }
+
+    @Override
+    boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis)
+            return true
+        } catch (InterruptedException ignored) {
+            return false
+        }
+    }
+
+    @Override
+    Long returnRemainingTimeMillis() {
+        return ExecutionContext.current()?.remainingTime?.toMillis()
+    }
 }
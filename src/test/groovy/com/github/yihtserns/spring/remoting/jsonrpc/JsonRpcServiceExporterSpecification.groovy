@@ -4,7 +4,9 @@ import com.fasterxml.jackson.annotation.JsonInclude
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.databind.node.NullNode
 import com.github.yihtserns.spring.remoting.jsonrpc.jackson.JacksonJsonProcessor
+import com.github.yihtserns.spring.remoting.jsonrpc.jackson.StreamingJsonProcessor
 import groovy.transform.ToString
+import org.slf4j.MDC
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration
 import org.springframework.boot.test.context.SpringBootTest
@@ -12,17 +14,23 @@ import org.springframework.boot.test.web.client.TestRestTemplate
 import org.springframework.boot.web.server.LocalServerPort
 import org.springframework.context.annotation.Bean
 import org.springframework.context.annotation.Configuration
+import org.springframework.core.task.TaskDecorator
 import org.springframework.http.HttpEntity
 import org.springframework.http.HttpHeaders
 import org.springframework.http.HttpMethod
 import org.springframework.http.HttpStatus
 import org.springframework.http.MediaType
 import org.springframework.http.ResponseEntity
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
 import spock.lang.Shared
 import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
 
+import java.time.Duration
 import java.time.OffsetDateTime
 import java.time.ZoneOffset
+import java.util.concurrent.CountDownLatch
 import java.util.concurrent.TimeUnit
 
 import static com.fasterxml.jackson.annotation.JsonInclude.Include
@@ -607,6 +615,355 @@ class JsonRpcServiceExporterSpecification extends Specification {
         }
     }
 
+    def "should fail with timeout error when method does not complete within its timeout"() {
+        given:
+        def request = new Request(id: randomUUID(), method: "sleep", params: [5000])
+
+        when:
+        long start = System.currentTimeMillis()
+        def response = callCalc(request)
+
+        then:
+        response == [
+                jsonrpc: "2.0",
+                id     : request.id,
+                error  : [
+                        code   : -32001,
+                        message: "Execution timed out"
+                ]
+        ]
+        System.currentTimeMillis() - start < 5000
+    }
+
+    def "can complete method within its timeout"() {
+        given:
+        def request = new Request(id: randomUUID(), method: "sleep", params: [10])
+
+        expect:
+        callCalc(request) == [
+                jsonrpc: "2.0",
+                id     : request.id,
+                result : true
+        ]
+    }
+
+    def "caller can tighten the method timeout using request header"() {
+        given:
+        def request = new Request(id: randomUUID(), method: "sleep", params: [300])
+
+        expect:
+        requestCalc(request, ["X-JsonRpc-Timeout": "50"]).body == [
+                jsonrpc: "2.0",
+                id     : request.id,
+                error  : [
+                        code   : -32001,
+                        message: "Execution timed out"
+                ]
+        ]
+    }
+
+    def "should expose remaining time to the method"() {
+        given:
+        def exporter = createStandaloneExporter(methodTimeouts: [returnRemainingTimeMillis: Duration.ofSeconds(5)])
+        def request = [jsonrpc: "2.0", id: 1, method: "returnRemainingTimeMillis", params: []]
+
+        expect: "deadline from method timeout"
+        with(handle(exporter, request)) { response ->
+            response.result > 3000
+            response.result <= 5000
+        }
+
+        and: "deadline from caller"
+        with(handle(exporter, request, ["X-JsonRpc-Timeout": "3000"])) { response ->
+            response.result > 0
+            response.result <= 3000
+        }
+
+        cleanup:
+        exporter.destroy()
+    }
+
+    def "method with timeout should only see the execution context of the request thread, unless decorated"() {
+        given:
+        def exporter = createStandaloneExporter(
+                methodTimeouts: timeout ? [returnStringArg: timeout] : [:],
+                timeoutTaskDecorator: taskDecorator,
+                service: new CalcServiceImpl() {
+                    @Override
+                    String returnStringArg(String mdcKey) {
+                        return "mdc=${MDC.get(mdcKey)}, executionContext=${ExecutionContext.current() != null}"
+                    }
+                })
+        MDC.put("requestId", "abc")
+
+        expect:
+        handle(exporter, [jsonrpc: "2.0", id: 1, method: "returnStringArg", params: ["requestId"]]).result == expectedResult
+
+        cleanup:
+        MDC.remove("requestId")
+        exporter.destroy()
+
+        where:
+        timeout               | taskDecorator | expectedResult
+        null                  | null          | "mdc=abc, executionContext=true"
+        Duration.ofSeconds(5) | null          | "mdc=null, executionContext=true"
+        Duration.ofSeconds(5) | copyingMdc()  | "mdc=abc, executionContext=true"
+    }
+
+    def "should ignore caller's deadline for method without timeout"() {
+        given:
+        def exporter = createStandaloneExporter()
+
+        expect:
+        with(handle(exporter, [jsonrpc: "2.0", id: 1, method: "returnRemainingTimeMillis", params: []], ["X-JsonRpc-Timeout": "3000"])) { response ->
+            response.error == null
+            response.result == null
+        }
+        handle(exporter, [jsonrpc: "2.0", id: 1, method: "sleep", params: [100]], ["X-JsonRpc-Timeout": "10"]) == [
+                jsonrpc: "2.0",
+                id     : 1,
+                result : true
+        ]
+
+        cleanup:
+        exporter.destroy()
+    }
+
+    def "should fail immediately when timeout executor is saturated"() {
+        given:
+        def release = new CountDownLatch(1)
+        def exporter = createStandaloneExporter(
+                timeoutThreadCount: 1,
+                methodTimeouts: [sleep: Duration.ofSeconds(5)],
+                service: new CalcServiceImpl() {
+                    @Override
+                    boolean sleep(long millis) {
+                        return release.await(5, TimeUnit.SECONDS)
+                    }
+                })
+        def running = Thread.start { handle(exporter, [jsonrpc: "2.0", id: 1, method: "sleep", params: [0]]) }
+        def queued = Thread.start { handle(exporter, [jsonrpc: "2.0", id: 1, method: "sleep", params: [0]]) }
+        new PollingConditions(timeout: 5).eventually {
+            assert exporter.@timeoutExecutor.activeCount == 1
+            assert exporter.@timeoutExecutor.queue.size() == 1
+        }
+
+        expect:
+        handle(exporter, [jsonrpc: "2.0", id: 1, method: "sleep", params: [0]]) == [
+                jsonrpc: "2.0",
+                id     : 1,
+                error  : [
+                        code   : -32603,
+                        message: "Internal error"
+                ]
+        ]
+
+        cleanup:
+        release.countDown()
+        running?.join()
+        queued?.join()
+        exporter.destroy()
+    }
+
+    def "should interrupt method that did not complete within its timeout"() {
+        given:
+        def interrupted = new CountDownLatch(1)
+        def exporter = createStandaloneExporter(
+                methodTimeouts: [sleep: Duration.ofMillis(100)],
+                service: new CalcServiceImpl() {
+                    @Override
+                    boolean sleep(long millis) {
+                        try {
+                            Thread.sleep(5000)
+                            return true
+                        } catch (InterruptedException ignored) {
+                            interrupted.countDown()
+                            return false
+                        }
+                    }
+                })
+
+        expect:
+        handle(exporter, [jsonrpc: "2.0", id: 1, method: "sleep", params: [0]]).error.code == -32001
+        interrupted.await(5, TimeUnit.SECONDS)
+
+        cleanup:
+        exporter.destroy()
+    }
+
+    def "should drain after a call timed out while waiting for a thread"() {
+        given:
+        def exporter = createStandaloneExporter(
+                timeoutThreadCount: 1,
+                methodTimeouts: [sleep: Duration.ofMillis(500)],
+                service: new CalcServiceImpl() {
+                    @Override
+                    boolean sleep(long millis) {
+                        try {
+                            Thread.sleep(5000)
+                            return true
+                        } catch (InterruptedException ignored) {
+                            return false
+                        }
+                    }
+                })
+        def responses = [].asSynchronized()
+        def running = Thread.start { responses << handle(exporter, [jsonrpc: "2.0", id: 1, method: "sleep", params: [0]]) }
+        def queued = Thread.start { responses << handle(exporter, [jsonrpc: "2.0", id: 2, method: "sleep", params: [0]]) }
+        new PollingConditions(timeout: 5).eventually {
+            assert exporter.@timeoutExecutor.activeCount == 1
+            assert exporter.@timeoutExecutor.queue.size() == 1
+        }
+
+        when:
+        running.join()
+        queued.join()
+
+        then:
+        responses*.error*.code == [-32001, -32001]
+        exporter.registerService(CalcService, new CalcServiceImpl(), Duration.ofSeconds(1))
+
+        cleanup:
+        running?.join()
+        queued?.join()
+        exporter.destroy()
+    }
+
+    def "should fail immediately when caller's deadline has already passed"() {
+        given:
+        def request = new Request(id: randomUUID(), method: "sleep", params: [10])
+
+        expect:
+        requestCalc(request, ["X-JsonRpc-Timeout": "0"]).body == [
+                jsonrpc: "2.0",
+                id     : request.id,
+                error  : [
+                        code   : -32001,
+                        message: "Execution timed out"
+                ]
+        ]
+    }
+
+    def "can configure timeout for method that will be registered at runtime"() {
+        given:
+        def exporter = createStandaloneExporter(methodTimeouts: [pluginSleep: Duration.ofMillis(100)])
+
+        when:
+        exporter.registerService(PluginService, { long millis -> sleep(millis); true } as PluginService, Duration.ofSeconds(1))
+
+        then:
+        handle(exporter, [jsonrpc: "2.0", id: 1, method: "pluginSleep", params: [5000]]).error == [
+                code   : -32001,
+                message: "Execution timed out"
+        ]
+    }
+
+    def "can set timeout of methods registered at runtime"() {
+        given:
+        def exporter = createStandaloneExporter()
+
+        when:
+        exporter.registerMethod(CalcService.getMethod("sleep", long), new CalcServiceImpl(), Duration.ofMillis(100), Duration.ofSeconds(1))
+        exporter.registerService(
+                PluginService,
+                { long millis -> sleep(millis); true } as PluginService,
+                [pluginSleep: Duration.ofMillis(100)],
+                Duration.ofSeconds(1))
+
+        then:
+        handle(exporter, [jsonrpc: "2.0", id: 1, method: methodName, params: [5000]]).error == [
+                code   : -32001,
+                message: "Execution timed out"
+        ]
+
+        where:
+        methodName << ["sleep", "pluginSleep"]
+    }
+
+    def "should throw when timeout is given for method not in the registered service interface"() {
+        given:
+        def exporter = createStandaloneExporter()
+
+        when:
+        exporter.registerService(
+                PluginService,
+                { long millis -> true } as PluginService,
+                [nonExistentMethod: Duration.ofSeconds(1)],
+                Duration.ofSeconds(1))
+
+        then:
+        def ex = thrown(IllegalArgumentException)
+        ex.message == "Timeout configured for method [nonExistentMethod]" +
+                " which does not exist in service interface [${PluginService.name}]"
+    }
+
+    def "can register & unregister service methods at runtime"() {
+        given:
+        def exporter = createStandaloneExporter()
+
+        when:
+        def drained = exporter.registerService(CalcService, new CalcServiceImpl() {
+            @Override
+            int returnInt() {
+                return 111
+            }
+        }, Duration.ofSeconds(1))
+
+        then:
+        drained
+        handle(exporter, [jsonrpc: "2.0", id: 1, method: "returnInt", params: []]).result == 111
+
+        when:
+        exporter.unregisterMethods(["returnInt"], Duration.ofSeconds(1))
+
+        then:
+        handle(exporter, [jsonrpc: "2.0", id: 1, method: "returnInt", params: []]).error == [
+                code   : -32601,
+                message: "Method not found"
+        ]
+        handle(exporter, [jsonrpc: "2.0", id: 1, method: "subtractArray", params: [10, 3]]).result == 10 - 3
+
+        when:
+        exporter.registerMethod(CalcService.getMethod("returnInt"), new CalcServiceImpl(), Duration.ofSeconds(1))
+
+        then:
+        handle(exporter, [jsonrpc: "2.0", id: 1, method: "returnInt", params: []]).result == 999
+    }
+
+    def "should drain in-flight calls of the replaced service"() {
+        given:
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def exporter = createStandaloneExporter(service: new CalcServiceImpl() {
+            @Override
+            boolean sleep(long millis) {
+                started.countDown()
+                return release.await(5, TimeUnit.SECONDS)
+            }
+        })
+        def inFlightCall = Thread.start {
+            handle(exporter, [jsonrpc: "2.0", id: 1, method: "sleep", params: [0]])
+        }
+        started.await(5, TimeUnit.SECONDS)
+
+        when:
+        def releaser = releasedWhileDraining ? Thread.start { Thread.sleep(100); release.countDown() } : null
+        def drained = exporter.registerService(CalcService, new CalcServiceImpl(), drainTimeout)
+
+        then:
+        drained == releasedWhileDraining
+
+        cleanup:
+        release.countDown()
+        releaser?.join()
+        inFlightCall?.join()
+
+        where:
+        drainTimeout          | releasedWhileDraining
+        Duration.ofMillis(10) | false
+        Duration.ofSeconds(5) | true
+    }
+
     def "does not support overloaded method"() {
         when:
         def exporter = new JsonRpcServiceExporter(
@@ -650,18 +1007,65 @@ class JsonRpcServiceExporterSpecification extends Specification {
                 " of class [${exporter.@service.class.name}]"
     }
 
+    protected JsonRpcServiceExporter createStandaloneExporter(Map<String, Object> properties = [:]) {
+        def exporter = new JsonRpcServiceExporter(
+                serviceInterface: CalcService,
+                service: new CalcServiceImpl(),
+                jsonProcessor: createJsonProcessor(new ObjectMapper()))
+        properties.each { name, value -> exporter[name] = value }
+        exporter.afterPropertiesSet()
+
+        return exporter
+    }
+
+    protected static Map handle(JsonRpcServiceExporter exporter, Map request, Map<String, String> headers = [:]) {
+        def objectMapper = new ObjectMapper()
+        def httpRequest = new MockHttpServletRequest(content: objectMapper.writeValueAsBytes(request))
+        headers.each { name, value -> httpRequest.addHeader(name, value) }
+        def httpResponse = new MockHttpServletResponse()
+
+        exporter.handleRequest(httpRequest, httpResponse)
+
+        return objectMapper.readValue(httpResponse.contentAsByteArray, Map)
+    }
+
     private Map callCalc(Request request) {
         return requestCalc(request).body
     }
 
-    private ResponseEntity<Map> requestCalc(Object request) {
+    private ResponseEntity<Map> requestCalc(Object request, Map<String, String> headers = [:]) {
+        def httpHeaders = new HttpHeaders(contentType: MediaType.APPLICATION_JSON)
+        headers.each { name, value -> httpHeaders.add(name, value) }
+
         return restTemplate.exchange(
-                "http://localhost:${port}/calc",
+                "http://localhost:${port}${calcPath}",
                 HttpMethod.POST,
-                new HttpEntity(request, new HttpHeaders(contentType: MediaType.APPLICATION_JSON)),
+                new HttpEntity(request, httpHeaders),
                 Map)
     }
 
+    protected String getCalcPath() {
+        return "/calc"
+    }
+
+    protected JsonProcessor createJsonProcessor(ObjectMapper objectMapper) {
+        return JacksonJsonProcessor.from(objectMapper)
+    }
+
+    private static TaskDecorator copyingMdc() {
+        return { Runnable task ->
+            def mdc = MDC.copyOfContextMap
+            return {
+                MDC.setContextMap(mdc)
+                try {
+                    task.run()
+                } finally {
+                    MDC.clear()
+                }
+            } as Runnable
+        } as TaskDecorator
+    }
+
     private static String randomUUID() {
         return UUID.randomUUID().toString()
     }
@@ -672,11 +1076,21 @@ class JsonRpcServiceExporterSpecification extends Specification {
 
         @Bean("/calc")
         JsonRpcServiceExporter calcServiceJsonRpcServiceExporter(ObjectMapper objectMapper) {
+            return createCalcServiceExporter(JacksonJsonProcessor.from(objectMapper))
+        }
+
+        @Bean("/calc-streaming")
+        JsonRpcServiceExporter calcServiceStreamingJsonRpcServiceExporter(ObjectMapper objectMapper) {
+            return createCalcServiceExporter(StreamingJsonProcessor.from(objectMapper))
+        }
+
+        private JsonRpcServiceExporter createCalcServiceExporter(JsonProcessor jsonProcessor) {
             return new JsonRpcServiceExporter(
                     serviceInterface: CalcService,
                     service: calcService(),
-                    jsonProcessor: JacksonJsonProcessor.from(objectMapper),
-                    exceptionHandler: new CustomApplicationExceptionToError())
+                    jsonProcessor: jsonProcessor,
+                    exceptionHandler: new CustomApplicationExceptionToError(),
+                    methodTimeouts: [sleep: Duration.ofMillis(1000)])
         }
 
         @Bean
@@ -690,6 +1104,14 @@ class JsonRpcServiceExporterSpecification extends Specification {
         }
     }
 
+    /**
+     * Stands for a module deployed at runtime.
+     */
+    static interface PluginService {
+
+        boolean pluginSleep(long millis)
+    }
+
     @ToString(includePackage = false, includeNames = true)
     static class Request {
 
@@ -0,0 +1,207 @@
+package com.github.yihtserns.spring.remoting.jsonrpc
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.yihtserns.spring.remoting.jsonrpc.jackson.JacksonJsonProcessor
+import org.springframework.http.HttpStatus
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+class NotificationExecutorSpecification extends Specification {
+
+    private ObjectMapper objectMapper = new ObjectMapper()
+    private List<String> receivedValues = new CopyOnWriteArrayList<>()
+    private List<Thread> receivingThreads = new CopyOnWriteArrayList<>()
+    private PollingConditions conditions = new PollingConditions(timeout: 5)
+    private NotificationExecutor notificationExecutor
+
+    def cleanup() {
+        notificationExecutor?.destroy()
+    }
+
+    def "should acknowledge notification before running it"() {
+        given:
+        def exporter = createExporter(new NotificationExecutor())
+
+        when:
+        long startTime = System.nanoTime()
+        def httpResponse = handle(exporter, [jsonrpc: "2.0", method: "sleep", params: [1000]])
+        long elapsedMillis = (System.nanoTime() - startTime).intdiv(1_000_000)
+
+        then:
+        httpResponse.status == HttpStatus.NO_CONTENT.value()
+        elapsedMillis < 500
+
+        when:
+        handle(exporter, [jsonrpc: "2.0", method: "returnStringArg", params: ["value"]])
+
+        then:
+        conditions.eventually {
+            assert receivedValues == ["value"]
+        }
+    }
+
+    def "should still run request synchronously"() {
+        given:
+        def exporter = createExporter(new NotificationExecutor())
+
+        when:
+        def httpResponse = handle(exporter, [jsonrpc: "2.0", id: 1, method: "returnStringArg", params: ["value"]])
+
+        then:
+        objectMapper.readValue(httpResponse.contentAsByteArray, Map) == [jsonrpc: "2.0", id: 1, result: "value"]
+        receivingThreads == [Thread.currentThread()]
+    }
+
+    def "can drop notification when queue is full"() {
+        given:
+        def exporter = createExporter(new NotificationExecutor(
+                threadCount: 1,
+                queueCapacity: 1,
+                overflowPolicy: NotificationExecutor.OverflowPolicy.DROP))
+
+        when:
+        handle(exporter, [jsonrpc: "2.0", method: "sleep", params: [500]]) // Occupies the only thread
+        handle(exporter, [jsonrpc: "2.0", method: "returnStringArg", params: ["queued"]])
+        def httpResponse = handle(exporter, [jsonrpc: "2.0", method: "returnStringArg", params: ["dropped"]])
+
+        then:
+        httpResponse.status == HttpStatus.NO_CONTENT.value()
+        notificationExecutor.queueDepth == 1
+        notificationExecutor.droppedCount == 1
+        conditions.eventually {
+            assert receivedValues == ["queued"]
+        }
+    }
+
+    def "can run notification on request thread when queue is full"() {
+        given:
+        def exporter = createExporter(new NotificationExecutor(
+                threadCount: 1,
+                queueCapacity: 1,
+                overflowPolicy: NotificationExecutor.OverflowPolicy.CALLER_RUNS))
+
+        when:
+        handle(exporter, [jsonrpc: "2.0", method: "sleep", params: [500]])
+        handle(exporter, [jsonrpc: "2.0", method: "returnStringArg", params: ["queued"]])
+        handle(exporter, [jsonrpc: "2.0", method: "returnStringArg", params: ["overflowed"]])
+
+        then:
+        receivedValues == ["overflowed"]
+        receivingThreads == [Thread.currentThread()]
+        notificationExecutor.droppedCount == 0
+        conditions.eventually {
+            assert receivedValues == ["overflowed", "queued"]
+        }
+    }
+
+    def "can wait for space in queue when queue is full"() {
+        given:
+        def exporter = createExporter(new NotificationExecutor(
+                threadCount: 1,
+                queueCapacity: 1,
+                overflowPolicy: NotificationExecutor.OverflowPolicy.BLOCK))
+
+        when:
+        handle(exporter, [jsonrpc: "2.0", method: "sleep", params: [500]])
+        handle(exporter, [jsonrpc: "2.0", method: "returnStringArg", params: ["queued"]])
+        long startTime = System.nanoTime()
+        handle(exporter, [jsonrpc: "2.0", method: "returnStringArg", params: ["overflowed"]])
+        long elapsedMillis = (System.nanoTime() - startTime).intdiv(1_000_000)
+
+        then:
+        elapsedMillis >= 300
+        notificationExecutor.droppedCount == 0
+        conditions.eventually {
+            assert receivedValues == ["queued", "overflowed"]
+        }
+    }
+
+    def "can coalesce queued notifications of the same method"() {
+        given:
+        def exporter = createExporter(new NotificationExecutor(threadCount: 1, coalescedMethods: ["returnStringArg"]))
+
+        when:
+        handle(exporter, [jsonrpc: "2.0", method: "sleep", params: [300]])
+        (1..5).each { i ->
+            handle(exporter, [jsonrpc: "2.0", method: "returnStringArg", params: [String.valueOf(i)]])
+        }
+
+        then:
+        notificationExecutor.queueDepth == 1
+        notificationExecutor.coalescedCount == 4
+        conditions.eventually {
+            assert receivedValues == ["5"]
+        }
+
+        when: "the coalesced notification has run"
+        handle(exporter, [jsonrpc: "2.0", method: "returnStringArg", params: ["6"]])
+
+        then:
+        conditions.eventually {
+            assert receivedValues == ["5", "6"]
+        }
+    }
+
+    def "should still run later notifications of a coalesced method that was dropped"() {
+        given:
+        def exporter = createExporter(new NotificationExecutor(
+                threadCount: 1,
+                queueCapacity: 1,
+                overflowPolicy: NotificationExecutor.OverflowPolicy.DROP,
+                coalescedMethods: ["returnStringArg"]))
+
+        when:
+        handle(exporter, [jsonrpc: "2.0", method: "sleep", params: [300]])
+        handle(exporter, [jsonrpc: "2.0", method: "sleep", params: [0]])
+        handle(exporter, [jsonrpc: "2.0", method: "returnStringArg", params: ["dropped"]])
+
+        then:
+        notificationExecutor.droppedCount == 1
+        notificationExecutor.coalescedCount == 0
+
+        when:
+        conditions.eventually {
+            assert notificationExecutor.queueDepth == 0
+        }
+        handle(exporter, [jsonrpc: "2.0", method: "returnStringArg", params: ["value"]])
+
+        then:
+        conditions.eventually {
+            assert receivedValues == ["value"]
+        }
+    }
+
+    private JsonRpcServiceExporter createExporter(NotificationExecutor notificationExecutor) {
+        notificationExecutor.afterPropertiesSet()
+        this.notificationExecutor = notificationExecutor
+        def receivedValues = this.receivedValues
+        def receivingThreads = this.receivingThreads
+
+        def exporter = new JsonRpcServiceExporter(
+                serviceInterface: CalcService,
+                service: new CalcServiceImpl() {
+                    @Override
+                    String returnStringArg(String value) {
+                        receivedValues.add(value)
+                        receivingThreads.add(Thread.currentThread())
+                        return value
+                    }
+                },
+                jsonProcessor: JacksonJsonProcessor.from(objectMapper),
+                notificationExecutor: notificationExecutor)
+        exporter.afterPropertiesSet()
+
+        return exporter
+    }
+
+    private MockHttpServletResponse handle(JsonRpcServiceExporter exporter, Map request) {
+        def httpResponse = new MockHttpServletResponse()
+        exporter.handleRequest(new MockHttpServletRequest(content: objectMapper.writeValueAsBytes(request)), httpResponse)
+
+        return httpResponse
+    }
+}
@@ -0,0 +1,243 @@
+package com.github.yihtserns.spring.remoting.jsonrpc
+
+import groovy.transform.CompileStatic
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+
+import javax.servlet.ServletOutputStream
+import javax.servlet.WriteListener
+import java.lang.management.ManagementFactory
+import java.lang.reflect.InvocationHandler
+import java.lang.reflect.InvocationTargetException
+import java.lang.reflect.Method
+import java.lang.reflect.Proxy
+
+/**
+ * Measures bytes allocated by the current thread, on average, for each call after warming up.
+ * <p>
+ * Statically compiled so that the measuring code itself does not allocate (e.g. boxing the allocated bytes).
+ * </p>
+ */
+@CompileStatic
+class RequestAllocationMeter {
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = ManagementFactory.threadMXBean instanceof com.sun.management.ThreadMXBean
+            ? (com.sun.management.ThreadMXBean) ManagementFactory.threadMXBean
+            : null
+
+    int warmUpIterations = 10_000
+    int measuredIterations = 10_000
+
+    static boolean isSupported() {
+        return THREAD_MX_BEAN != null && THREAD_MX_BEAN.threadAllocatedMemorySupported && THREAD_MX_BEAN.threadAllocatedMemoryEnabled
+    }
+
+    /**
+     * Stages are measured while {@link JsonRpcServiceExporter#handleRequest} handles the given request, by wrapping the
+     * JSON processor & the service. The response body is discarded, so that the serialize stage does not include the
+     * growth of the (mock) response buffer.
+     *
+     * @return average bytes allocated by each stage of handling the given request: {@code parse}, {@code bind},
+     * {@code invoke} & {@code serialize}
+     */
+    Map<String, Long> measureStages(JsonProcessor jsonProcessor, Class<?> serviceInterface, Object service, byte[] request) {
+        Stages stages = new Stages(measureMeasuringCost())
+        JsonRpcServiceExporter exporter = new JsonRpcServiceExporter()
+        exporter.serviceInterface = serviceInterface
+        exporter.service = Proxy.newProxyInstance(
+                serviceInterface.classLoader,
+                [serviceInterface] as Class<?>[],
+                new StageMeteringInvocationHandler(service, stages))
+        exporter.jsonProcessor = new StageMeteringJsonProcessor(jsonProcessor, stages)
+        exporter.afterPropertiesSet()
+
+        try {
+            for (int i = 0; i < warmUpIterations + measuredIterations; i++) {
+                MockHttpServletRequest httpRequest = new MockHttpServletRequest()
+                httpRequest.content = request
+                MockHttpServletResponse httpResponse = new DiscardingHttpServletResponse()
+
+                stages.measuring = i >= warmUpIterations
+                exporter.handleRequest(httpRequest, httpResponse)
+
+                checkStatus(httpResponse)
+            }
+        } finally {
+            exporter.destroy()
+        }
+
+        Map<String, Long> stage2AllocatedBytes = new LinkedHashMap<>()
+        stage2AllocatedBytes.put("parse", stages.parseTotal.intdiv(measuredIterations).longValue())
+        stage2AllocatedBytes.put("bind", stages.bindTotal.intdiv(measuredIterations).longValue())
+        stage2AllocatedBytes.put("invoke", stages.invokeTotal.intdiv(measuredIterations).longValue())
+        stage2AllocatedBytes.put("serialize", stages.serializeTotal.intdiv(measuredIterations).longValue())
+
+        return stage2AllocatedBytes
+    }
+
+    /**
+     * @return average bytes allocated by {@link JsonRpcServiceExporter#handleRequest}, excluding the creation of the
+     * (mock) HTTP request & response
+     */
+    long measureHandleRequest(JsonRpcServiceExporter exporter, byte[] request) {
+        long measuringCost = measureMeasuringCost()
+        long total = 0
+
+        for (int i = 0; i < warmUpIterations + measuredIterations; i++) {
+            MockHttpServletRequest httpRequest = new MockHttpServletRequest()
+            httpRequest.content = request
+            MockHttpServletResponse httpResponse = new MockHttpServletResponse()
+
+            long start = allocatedBytes()
+            exporter.handleRequest(httpRequest, httpResponse)
+            long end = allocatedBytes()
+
+            checkStatus(httpResponse)
+            if (i >= warmUpIterations) {
+                total += end - start - measuringCost
+            }
+        }
+
+        return total.intdiv(measuredIterations).longValue()
+    }
+
+    private static void checkStatus(MockHttpServletResponse httpResponse) {
+        if (httpResponse.status != 200) {
+            throw new IllegalStateException("Unexpected response status: " + httpResponse.status)
+        }
+    }
+
+    /**
+     * Reading the allocated bytes may allocate by itself, depending on the JDK.
+     */
+    private long measureMeasuringCost() {
+        long total = 0
+        for (int i = 0; i < warmUpIterations + measuredIterations; i++) {
+            long start = allocatedBytes()
+            long end = allocatedBytes()
+
+            if (i >= warmUpIterations) {
+                total += end - start
+            }
+        }
+        return total.intdiv(measuredIterations).longValue()
+    }
+
+    private static long allocatedBytes() {
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().id)
+    }
+
+    private static class Stages {
+
+        final long measuringCost
+        boolean measuring = false
+        long parseTotal = 0
+        long bindTotal = 0
+        long invokeTotal = 0
+        long serializeTotal = 0
+
+        Stages(long measuringCost) {
+            this.measuringCost = measuringCost
+        }
+
+        /**
+         * @return what to add to the stage's total
+         */
+        long since(long start) {
+            long end = allocatedBytes()
+            return measuring ? end - start - measuringCost : 0
+        }
+    }
+
+    private static class StageMeteringJsonProcessor implements JsonProcessor {
+
+        private final JsonProcessor delegate
+        private final Stages stages
+
+        StageMeteringJsonProcessor(JsonProcessor delegate, Stages stages) {
+            this.delegate = delegate
+            this.stages = stages
+        }
+
+        @Override
+        JsonRpcRequest<?> processRequest(InputStream inputStream) throws Exception {
+            long start = allocatedBytes()
+            JsonRpcRequest<?> request = delegate.processRequest(inputStream)
+            stages.parseTotal += stages.since(start)
+
+            return request
+        }
+
+        @Override
+        List<Object> processParamsIntoMethodArguments(ExecutionContext context) throws Exception {
+            long start = allocatedBytes()
+            List<Object> methodArguments = delegate.processParamsIntoMethodArguments(context)
+            stages.bindTotal += stages.since(start)
+
+            return methodArguments
+        }
+
+        @Override
+        void processResponse(JsonRpcResponse response, OutputStream outputStream) throws Exception {
+            long start = allocatedBytes()
+            delegate.processResponse(response, outputStream)
+            stages.serializeTotal += stages.since(start)
+        }
+
+        @Override
+        void processNotification(JsonRpcNotification notification, OutputStream outputStream) throws Exception {
+            delegate.processNotification(notification, outputStream)
+        }
+    }
+
+    private static class StageMeteringInvocationHandler implements InvocationHandler {
+
+        private final Object service
+        private final Stages stages
+
+        StageMeteringInvocationHandler(Object service, Stages stages) {
+            this.service = service
+            this.stages = stages
+        }
+
+        @Override
+        Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            long start = allocatedBytes()
+            try {
+                return method.invoke(service, args)
+            } catch (InvocationTargetException ex) {
+                throw ex.cause
+            } finally {
+                stages.invokeTotal += stages.since(start)
+            }
+        }
+    }
+
+    private static class DiscardingHttpServletResponse extends MockHttpServletResponse {
+
+        private static final ServletOutputStream DISCARDING_OUTPUT_STREAM = new ServletOutputStream() {
+
+            @Override
+            boolean isReady() {
+                return true
+            }
+
+            @Override
+            void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            void write(int b) {
+            }
+
+            @Override
+            void write(byte[] buffer, int offset, int length) {
+            }
+        }
+
+        @Override
+        ServletOutputStream getOutputStream() {
+            return DISCARDING_OUTPUT_STREAM
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.yihtserns.spring.remoting.jsonrpc.capture
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.yihtserns.spring.remoting.jsonrpc.CalcService
+import com.github.yihtserns.spring.remoting.jsonrpc.CalcServiceImpl
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcServiceExporter
+import com.github.yihtserns.spring.remoting.jsonrpc.jackson.JacksonJsonProcessor
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+
+class TrafficCaptureSpecification extends Specification {
+
+    @TempDir
+    private Path tempDir
+
+    private ObjectMapper objectMapper = new ObjectMapper()
+
+    def "can capture requests, with redacted params"() {
+        given:
+        def captureFile = tempDir.resolve("traffic.capture")
+        def trafficCapture = new TrafficCapture(
+                file: captureFile,
+                redactedParams: [returnStringArg: ["0"], returnObjectArg: ["stringValue"]])
+        trafficCapture.afterPropertiesSet()
+        def exporter = createExporter(trafficCapture)
+
+        when:
+        handle(exporter, [jsonrpc: "2.0", id: 1, method: "subtractArray", params: [10, 3]])
+        handle(exporter, [jsonrpc: "2.0", id: 2, method: "returnStringArg", params: ["secret"]])
+        handle(exporter, [jsonrpc: "2.0", id: 3, method: "returnObjectArg", params: [stringValue: "secret", booleanValue: true]])
+        trafficCapture.destroy()
+
+        then:
+        def capturedRequests = TrafficCapture.readAll(captureFile)
+        capturedRequests.collect { objectMapper.readValue(it.body, Map) } == [
+                [jsonrpc: "2.0", id: 1, method: "subtractArray", params: [10, 3]],
+                [jsonrpc: "2.0", id: 2, method: "returnStringArg", params: ["<redacted>"]],
+                [jsonrpc: "2.0", id: 3, method: "returnObjectArg", params: [stringValue: "<redacted>", booleanValue: true]]
+        ]
+        capturedRequests.every { it.durationNanos > 0 && it.responseSize > 0 }
+        capturedRequests*.offsetNanos == capturedRequests*.offsetNanos.sort(false)
+    }
+
+    def "should redact params of each request in a batch"() {
+        given:
+        def captureFile = tempDir.resolve("traffic.capture")
+        def trafficCapture = new TrafficCapture(file: captureFile, redactedParams: [returnStringArg: ["0"]])
+        trafficCapture.afterPropertiesSet()
+
+        when:
+        handle(createExporter(trafficCapture), [
+                [jsonrpc: "2.0", id: 1, method: "returnStringArg", params: ["secret"]],
+                [jsonrpc: "2.0", id: 2, method: "subtractArray", params: [10, 3]]
+        ])
+        trafficCapture.destroy()
+
+        then:
+        TrafficCapture.readAll(captureFile).collect { objectMapper.readValue(it.body, List) } == [[
+                [jsonrpc: "2.0", id: 1, method: "returnStringArg", params: ["<redacted>"]],
+                [jsonrpc: "2.0", id: 2, method: "subtractArray", params: [10, 3]]
+        ]]
+    }
+
+    def "should not hang on shutdown when the writer has stopped with a full queue"() {
+        given:
+        def trafficCapture = new TrafficCapture(file: tempDir.resolve("traffic.capture"), queueCapacity: 1)
+        trafficCapture.afterPropertiesSet()
+        trafficCapture.@writerThread.interrupt()
+        trafficCapture.@writerThread.join()
+
+        and:
+        trafficCapture.sample().record(System.nanoTime())
+
+        when:
+        long startTime = System.nanoTime()
+        trafficCapture.destroy()
+
+        then:
+        System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(5)
+    }
+
+    def "can append capture sessions to the same file"() {
+        given:
+        def captureFile = tempDir.resolve("traffic.capture")
+
+        when:
+        2.times { session ->
+            def trafficCapture = new TrafficCapture(file: captureFile)
+            trafficCapture.afterPropertiesSet()
+            handle(createExporter(trafficCapture), [jsonrpc: "2.0", id: session, method: "returnInt", params: []])
+            trafficCapture.destroy()
+        }
+
+        then:
+        TrafficCapture.readAll(captureFile).collect { objectMapper.readValue(it.body, Map).id } == [0, 1]
+    }
+
+    def "should not capture when not sampled"() {
+        given:
+        def captureFile = tempDir.resolve("traffic.capture")
+        def trafficCapture = new TrafficCapture(file: captureFile, sampleRate: 0)
+        trafficCapture.afterPropertiesSet()
+
+        when:
+        handle(createExporter(trafficCapture), [jsonrpc: "2.0", id: 1, method: "returnInt", params: []])
+        trafficCapture.destroy()
+
+        then:
+        TrafficCapture.readAll(captureFile).isEmpty()
+    }
+
+    def "can replay captured requests"() {
+        given:
+        def captureFile = tempDir.resolve("traffic.capture")
+        def trafficCapture = new TrafficCapture(file: captureFile)
+        trafficCapture.afterPropertiesSet()
+        def exporter = createExporter(trafficCapture)
+        20.times { id ->
+            handle(exporter, [jsonrpc: "2.0", id: id, method: "subtractArray", params: [id, 1]])
+        }
+        trafficCapture.destroy()
+
+        and:
+        def replayedResponses = Collections.synchronizedList([])
+        def replayExporter = createExporter(null)
+        def replayTarget = { byte[] request ->
+            def httpResponse = new MockHttpServletResponse()
+            replayExporter.handleRequest(new MockHttpServletRequest(content: request), httpResponse)
+            replayedResponses << objectMapper.readValue(httpResponse.contentAsByteArray, Map)
+        } as ReplayTarget
+
+        when:
+        def report = new TrafficReplayer(speed: speed, concurrency: 4).replay(captureFile, replayTarget)
+
+        then:
+        report.requestCount == 20
+        report.failedCount == 0
+        report.throughput > 0
+        report.getLatencyAtPercentile(50) <= report.getLatencyAtPercentile(99)
+        report.getLatencyAtPercentile(99) <= report.getLatencyAtPercentile(99.9)
+        replayedResponses*.result.sort() == (0..<20).collect { it - 1 }
+
+        where:
+        speed << [0, 1, 10]
+    }
+
+    def "should count failed requests during replay"() {
+        given:
+        def capturedRequests = (1..5).collect { new CapturedRequest(it * 1000L, 0, 0, '{}'.bytes) }
+
+        when:
+        def report = new TrafficReplayer().replay(capturedRequests, { throw new IOException("Simulated") } as ReplayTarget)
+
+        then:
+        report.requestCount == 5
+        report.failedCount == 5
+        report.elapsed < Duration.ofSeconds(5)
+    }
+
+    private static JsonRpcServiceExporter createExporter(TrafficCapture trafficCapture) {
+        def exporter = new JsonRpcServiceExporter(
+                serviceInterface: CalcService,
+                service: new CalcServiceImpl(),
+                jsonProcessor: JacksonJsonProcessor.from(new ObjectMapper()),
+                trafficCapture: trafficCapture)
+        exporter.afterPropertiesSet()
+
+        return exporter
+    }
+
+    private void handle(JsonRpcServiceExporter exporter, Object request) {
+        exporter.handleRequest(
+                new MockHttpServletRequest(content: objectMapper.writeValueAsBytes(request)),
+                new MockHttpServletResponse())
+    }
+}
@@ -0,0 +1,346 @@
+package com.github.yihtserns.spring.remoting.jsonrpc.gateway
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.yihtserns.spring.remoting.jsonrpc.CalcService
+import com.github.yihtserns.spring.remoting.jsonrpc.CalcServiceImpl
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcServiceExporter
+import com.github.yihtserns.spring.remoting.jsonrpc.jackson.JacksonJsonProcessor
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.web.server.LocalServerPort
+import org.springframework.context.annotation.Bean
+import org.springframework.context.annotation.Configuration
+import org.springframework.http.HttpStatus
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import spock.lang.Specification
+
+import javax.servlet.ServletInputStream
+
+import java.time.Duration
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class JsonRpcGatewaySpecification extends Specification {
+
+    private static final long SLOW_BACKEND_MILLIS = 300
+    private static final long SLOW_CALLER_MILLIS = 300
+
+    @LocalServerPort
+    private int port
+
+    private ObjectMapper objectMapper = new ObjectMapper()
+    private List<JsonRpcGateway> gateways = []
+
+    def cleanup() {
+        gateways*.destroy()
+    }
+
+    def "can forward using round-robin"() {
+        given:
+        def gateway = createGateway(new Route(methodPattern: "*", backends: [backend(1), backend(2)]))
+
+        when:
+        def results = (1..4).collect { id ->
+            callGateway(gateway, [jsonrpc: "2.0", id: id, method: "returnInt", params: []]).result
+        }
+
+        then:
+        results.countBy { it } == [1: 2, 2: 2]
+    }
+
+    def "can forward using least-outstanding"() {
+        given:
+        def gateway = createGateway(new Route(
+                methodPattern: "*",
+                backends: [backend(1), backend(2)],
+                strategy: LoadBalancingStrategy.LEAST_OUTSTANDING))
+
+        when:
+        def results = (1..4).collect { id ->
+            callGateway(gateway, [jsonrpc: "2.0", id: id, method: "returnInt", params: []]).result
+        }
+
+        then: "ties are spread out"
+        results.countBy { it } == [1: 2, 2: 2]
+    }
+
+    def "can forward using consistent hash of a param"() {
+        given:
+        def gateway = createGateway(new Route(
+                methodPattern: "returnStringArg",
+                backends: [backend(1), backend(2)],
+                strategy: LoadBalancingStrategy.CONSISTENT_HASH,
+                hashParam: "0"))
+
+        when:
+        def results = (1..20).collect { i ->
+            callGateway(gateway, [jsonrpc: "2.0", id: i, method: "returnStringArg", params: ["key-${i % 5}".toString()]]).result
+        }
+
+        then: "same value always goes to the same backend"
+        results.unique().size() == 5
+    }
+
+    def "can route by method name"() {
+        given:
+        def gateway = createGateway(
+                new Route(methodPattern: "returnInt", backends: [backend(2)]),
+                new Route(methodPattern: "*", backends: [backend(1)]))
+
+        expect:
+        callGateway(gateway, [jsonrpc: "2.0", id: 1, method: "returnInt", params: []]).result == 2
+        callGateway(gateway, [jsonrpc: "2.0", id: 2, method: "returnStringArg", params: ["value"]]).result == "1:value"
+    }
+
+    def "should fail with method not found when no route matches"() {
+        given:
+        def gateway = createGateway(new Route(methodPattern: "subtract*", backends: [backend(1)]))
+
+        expect:
+        callGateway(gateway, [jsonrpc: "2.0", id: "abc", method: "returnInt", params: []]) == [
+                jsonrpc: "2.0",
+                id     : "abc",
+                error  : [
+                        code   : -32601,
+                        message: "Method not found"
+                ]
+        ]
+    }
+
+    def "can forward each element of a batch request"() {
+        given:
+        def gateway = createGateway(new Route(methodPattern: "*", backends: [backend(1)]))
+
+        when:
+        def response = callGateway(gateway, [
+                [jsonrpc: "2.0", id: 1, method: "returnInt", params: []],
+                [jsonrpc: "2.0", method: "returnInt", params: []],
+                [jsonrpc: "2.0", id: 2, method: "subtractArray", params: [10, 3]],
+                5
+        ])
+
+        then:
+        response == [
+                [jsonrpc: "2.0", id: 1, result: 1],
+                [jsonrpc: "2.0", id: 2, result: 10 - 3],
+                [jsonrpc: "2.0", id: null, error: [code: -32600, message: "Invalid Request"]]
+        ]
+    }
+
+    def "should forward elements of a batch request concurrently"() {
+        given:
+        def gateway = createGateway(new Route(methodPattern: "*", backends: [slowBackend()]))
+
+        when:
+        long startTime = System.nanoTime()
+        def response = callGateway(gateway, (1..4).collect { id -> [jsonrpc: "2.0", id: id, method: "returnInt", params: []] })
+        long elapsedMillis = (System.nanoTime() - startTime).intdiv(1_000_000)
+
+        then:
+        response == (1..4).collect { id -> [jsonrpc: "2.0", id: id, result: 3] }
+        elapsedMillis < 4 * SLOW_BACKEND_MILLIS
+    }
+
+    def "should not respond to batch of notifications"() {
+        given:
+        def gateway = createGateway(new Route(methodPattern: "*", backends: [backend(1)]))
+        def httpResponse = new MockHttpServletResponse()
+
+        when:
+        gateway.handleRequest(
+                new MockHttpServletRequest(content: objectMapper.writeValueAsBytes([
+                        [jsonrpc: "2.0", method: "returnInt", params: []],
+                        [jsonrpc: "2.0", method: "returnInt", params: []]
+                ])),
+                httpResponse)
+
+        then:
+        httpResponse.status == HttpStatus.NO_CONTENT.value()
+        httpResponse.contentAsByteArray.length == 0
+    }
+
+    def "should fail with parse error when the request json is invalid"() {
+        given:
+        def gateway = createGateway(new Route(methodPattern: "*", backends: [backend(1)]))
+        def httpResponse = new MockHttpServletResponse()
+
+        when:
+        gateway.handleRequest(new MockHttpServletRequest(content: invalidJson.bytes), httpResponse)
+
+        then:
+        objectMapper.readValue(httpResponse.contentAsByteArray, Map) == [
+                jsonrpc: "2.0",
+                id     : null,
+                error  : [
+                        code   : -32700,
+                        message: "Parse error"
+                ]
+        ]
+
+        where:
+        invalidJson << [
+                '{"jsonrpc": "2.0", "method": "foobar, "params": "bar", "baz]',
+                '[{"jsonrpc": "2.0", "method": "returnInt"}, {"jsonrpc": "2.0", "method"]',
+                '"string"',
+                ''
+        ]
+    }
+
+    def "should eject backend that keeps failing"() {
+        given:
+        def gateway = createGateway(new Route(methodPattern: "*", backends: ["http://localhost:1/unreachable", backend(1)]))
+        gateway.maxConsecutiveFailures = 1
+        gateway.ejectionDuration = Duration.ofMinutes(1)
+
+        when:
+        def responses = (1..6).collect { id ->
+            callGateway(gateway, [jsonrpc: "2.0", id: id, method: "returnInt", params: []])
+        }
+
+        then:
+        responses.count { it.error == [code: -32603, message: "Internal error"] } <= 1
+        responses.count { it.result == 1 } >= 5
+    }
+
+    def "should eject backend that does not respond in time"() {
+        given:
+        def gateway = createGateway(
+                [maxConsecutiveFailures: 1, ejectionDuration: Duration.ofMinutes(1), readTimeout: Duration.ofMillis(100)],
+                new Route(methodPattern: "*", backends: [slowBackend(), backend(1)]))
+
+        when:
+        def responses = (1..6).collect { id ->
+            callGateway(gateway, [jsonrpc: "2.0", id: id, method: "returnInt", params: []])
+        }
+
+        then:
+        responses.count { it.error == [code: -32603, message: "Internal error"] } == 1
+        responses.count { it.result == 1 } == 5
+    }
+
+    def "should fail with internal error when backend does not give JSON-RPC response"() {
+        given:
+        def gateway = createGateway(new Route(methodPattern: "*", backends: ["http://localhost:${port}/nonExistent".toString()]))
+
+        expect:
+        callGateway(gateway, [jsonrpc: "2.0", id: 1, method: "returnInt", params: []]) == [
+                jsonrpc: "2.0",
+                id     : 1,
+                error  : [
+                        code   : -32603,
+                        message: "Internal error"
+                ]
+        ]
+    }
+
+    def "should forward caller's deadline minus the time already spent"() {
+        given:
+        def gateway = createGateway(new Route(methodPattern: "*", backends: [deadlineBackend()]))
+        def httpRequest = new MockHttpServletRequest() {
+            @Override
+            ServletInputStream getInputStream() {
+                Thread.sleep(SLOW_CALLER_MILLIS) // E.g. slow client
+                return super.getInputStream()
+            }
+        }
+        httpRequest.content = objectMapper.writeValueAsBytes([jsonrpc: "2.0", id: 1, method: "returnRemainingTimeMillis", params: []])
+        httpRequest.addHeader("X-JsonRpc-Timeout", "3000")
+        def httpResponse = new MockHttpServletResponse()
+
+        when:
+        gateway.handleRequest(httpRequest, httpResponse)
+
+        then:
+        with(objectMapper.readValue(httpResponse.contentAsByteArray, Map)) { response ->
+            response.result > 0
+            response.result <= 3000 - SLOW_CALLER_MILLIS
+        }
+    }
+
+    private JsonRpcGateway createGateway(Route... routes) {
+        return createGateway([:], routes)
+    }
+
+    private JsonRpcGateway createGateway(Map<String, Object> properties, Route... routes) {
+        def gateway = new JsonRpcGateway(routes: routes.toList())
+        properties.each { name, value -> gateway[name] = value }
+        gateway.afterPropertiesSet()
+        gateways << gateway
+
+        return gateway
+    }
+
+    private String backend(int number) {
+        return "http://localhost:${port}/backend${number}"
+    }
+
+    private String deadlineBackend() {
+        return "http://localhost:${port}/deadlineBackend"
+    }
+
+    private String slowBackend() {
+        return "http://localhost:${port}/slowBackend"
+    }
+
+    private Object callGateway(JsonRpcGateway gateway, Object request) {
+        def httpResponse = new MockHttpServletResponse()
+        gateway.handleRequest(new MockHttpServletRequest(content: objectMapper.writeValueAsBytes(request)), httpResponse)
+
+        return objectMapper.readValue(httpResponse.contentAsByteArray, Object)
+    }
+
+    @Configuration
+    @EnableAutoConfiguration
+    static class Application {
+
+        @Bean("/backend1")
+        JsonRpcServiceExporter backend1(ObjectMapper objectMapper) {
+            return createBackend(1, objectMapper)
+        }
+
+        @Bean("/backend2")
+        JsonRpcServiceExporter backend2(ObjectMapper objectMapper) {
+            return createBackend(2, objectMapper)
+        }
+
+        @Bean("/deadlineBackend")
+        JsonRpcServiceExporter deadlineBackend(ObjectMapper objectMapper) {
+            return new JsonRpcServiceExporter(
+                    serviceInterface: CalcService,
+                    service: new CalcServiceImpl(),
+                    jsonProcessor: JacksonJsonProcessor.from(objectMapper),
+                    methodTimeouts: [returnRemainingTimeMillis: Duration.ofSeconds(5)])
+        }
+
+        @Bean("/slowBackend")
+        JsonRpcServiceExporter slowBackend(ObjectMapper objectMapper) {
+            return new JsonRpcServiceExporter(
+                    serviceInterface: CalcService,
+                    service: new CalcServiceImpl() {
+                        @Override
+                        int returnInt() {
+                            Thread.sleep(SLOW_BACKEND_MILLIS)
+                            return 3
+                        }
+                    },
+                    jsonProcessor: JacksonJsonProcessor.from(objectMapper))
+        }
+
+        private static JsonRpcServiceExporter createBackend(int number, ObjectMapper objectMapper) {
+            return new JsonRpcServiceExporter(
+                    serviceInterface: CalcService,
+                    service: new CalcServiceImpl() {
+                        @Override
+                        int returnInt() {
+                            return number
+                        }
+
+                        @Override
+                        String returnStringArg(String value) {
+                            return "${number}:${value}"
+                        }
+                    },
+                    jsonProcessor: JacksonJsonProcessor.from(objectMapper))
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.yihtserns.spring.remoting.jsonrpc.jackson
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
+import com.github.yihtserns.spring.remoting.jsonrpc.CalcService
+import com.github.yihtserns.spring.remoting.jsonrpc.CalcServiceImpl
+import com.github.yihtserns.spring.remoting.jsonrpc.DataTypeObject
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonProcessor
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcServiceExporter
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import spock.lang.Requires
+import spock.lang.Specification
+
+/**
+ * Throughput of {@link JsonRpcServiceExporter#handleRequest} using {@link JacksonJsonProcessor} vs
+ * {@link StreamingJsonProcessor}, which is expected to be faster by at least the given ratio.
+ * <p>
+ * Large payloads are dominated by binding the values themselves, which both processors leave to Jackson, so there
+ * StreamingJsonProcessor only needs to not be slower.
+ * </p>
+ * <p>
+ * Only runs when requested, e.g. {@code mvn test -Dbenchmark=true -Dtest=JsonProcessorBenchmarkSpecification}.
+ * </p>
+ */
+@Requires({ System.getProperty("benchmark") })
+class JsonProcessorBenchmarkSpecification extends Specification {
+
+    private static final int ROUNDS = 5
+    private static final int WARM_UP_ITERATIONS = 20_000
+    private static final int MEASURED_ITERATIONS = 20_000
+
+    def "StreamingJsonProcessor should handle #shape at least #minRatio times as fast"() {
+        given:
+        def objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+        def request = objectMapper.writeValueAsBytes([jsonrpc: "2.0", id: 1, method: method, params: params])
+        def jacksonExporter = createExporter(JacksonJsonProcessor.from(objectMapper))
+        def streamingExporter = createExporter(StreamingJsonProcessor.from(objectMapper))
+
+        when: "rounds are interleaved & the best one is taken, so that neither benefits from running later"
+        WARM_UP_ITERATIONS.times {
+            handle(jacksonExporter, request)
+            handle(streamingExporter, request)
+        }
+        double jacksonOpsPerSecond = 0
+        double streamingOpsPerSecond = 0
+        ROUNDS.times {
+            jacksonOpsPerSecond = Math.max(jacksonOpsPerSecond, measure(jacksonExporter, request))
+            streamingOpsPerSecond = Math.max(streamingOpsPerSecond, measure(streamingExporter, request))
+        }
+
+        then:
+        streamingOpsPerSecond >= jacksonOpsPerSecond * minRatio
+
+        cleanup:
+        jacksonExporter?.destroy()
+        streamingExporter?.destroy()
+
+        where:
+        shape              | method                | params                                                                          | minRatio
+        "no params"        | "returnInt"           | []                                                                              | 1.2
+        "int params"       | "subtractArray"       | [10, 3]                                                                         | 1.2
+        "string param"     | "returnStringArg"     | ["Expected Param Value"]                                                        | 1.2
+        "object param"     | "subtractObject"      | [firstValue: 10, secondValue: 3]                                                | 1.2
+        "large list param" | "returnStringListArg" | [(1..1000).collect { "Value ${it}".toString() }]                                | 0.9
+        "nested object"    | "returnObjectArg"     | [[stringValue: "value", doubleListValue: [1.1, 2.2], mapValue: [a: 1, b: 2]]] | 1.0
+    }
+
+    private static JsonRpcServiceExporter createExporter(JsonProcessor jsonProcessor) {
+        def exporter = new JsonRpcServiceExporter(
+                serviceInterface: CalcService,
+                service: new CalcServiceImpl() {
+                    // Without CalcServiceImpl's per-element assertions, which would dominate the measurement
+
+                    @Override
+                    List<String> returnStringListArg(List<String> value) {
+                        return value
+                    }
+
+                    @Override
+                    DataTypeObject returnObjectArg(DataTypeObject value) {
+                        return value
+                    }
+                },
+                jsonProcessor: jsonProcessor)
+        exporter.afterPropertiesSet()
+
+        return exporter
+    }
+
+    private static double measure(JsonRpcServiceExporter exporter, byte[] request) {
+        long start = System.nanoTime()
+        MEASURED_ITERATIONS.times { handle(exporter, request) }
+        long elapsed = System.nanoTime() - start
+
+        return MEASURED_ITERATIONS * 1e9 / elapsed
+    }
+
+    private static void handle(JsonRpcServiceExporter exporter, byte[] request) {
+        def httpResponse = new MockHttpServletResponse()
+        exporter.handleRequest(new MockHttpServletRequest(content: request), httpResponse)
+
+        assert httpResponse.status == 200
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.yihtserns.spring.remoting.jsonrpc.jackson
+
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.databind.DeserializationContext
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer
+import com.fasterxml.jackson.databind.module.SimpleModule
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonProcessor
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcServiceExporterSpecification
+import org.springframework.boot.test.context.SpringBootTest
+
+/**
+ * Runs the same features as {@link JsonRpcServiceExporterSpecification}, to ensure the results are the same as
+ * {@link JacksonJsonProcessor}'s.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        classes = JsonRpcServiceExporterSpecification.Application)
+class StreamingJsonProcessorSpecification extends JsonRpcServiceExporterSpecification {
+
+    @Override
+    protected String getCalcPath() {
+        return "/calc-streaming"
+    }
+
+    @Override
+    protected JsonProcessor createJsonProcessor(ObjectMapper objectMapper) {
+        return StreamingJsonProcessor.from(objectMapper)
+    }
+
+    def "should use custom deserializer registered for scalar param type"() {
+        given:
+        def objectMapper = new ObjectMapper().registerModule(new SimpleModule()
+                .addDeserializer(String, new StdScalarDeserializer<String>(String) {
+                    @Override
+                    String deserialize(JsonParser parser, DeserializationContext context) {
+                        return parser.getValueAsString().trim()
+                    }
+                })
+                .addDeserializer(Double, new StdScalarDeserializer<Double>(Double) {
+                    @Override
+                    Double deserialize(JsonParser parser, DeserializationContext context) {
+                        return parser.getDoubleValue() * 10
+                    }
+                }))
+        def jacksonExporter = createStandaloneExporter(jsonProcessor: JacksonJsonProcessor.from(objectMapper))
+        def streamingExporter = createStandaloneExporter(jsonProcessor: StreamingJsonProcessor.from(objectMapper))
+        def request = [jsonrpc: "2.0", id: 1, method: method, params: params]
+
+        expect:
+        handle(streamingExporter, request).result == expectedResult
+        handle(jacksonExporter, request).result == expectedResult
+
+        where:
+        method                   | params         | expectedResult
+        "returnStringArg"        | ["  padded  "] | "padded"
+        "returnDoubleWrapperArg" | [1.5]          | 15.0
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.yihtserns.spring.remoting.jsonrpc.loadtest
+
+import com.github.yihtserns.spring.remoting.jsonrpc.capture.ReplayTarget
+import com.github.yihtserns.spring.remoting.jsonrpc.util.LatencyHistogram
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory
+
+import java.time.Duration
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Sends the same request over and over, over {@link #connections} connections:
+ * <ul>
+ *     <li>{@link Mode#CLOSED}: each connection sends its next request as soon as the previous one is answered, to find
+ *     the maximum throughput.</li>
+ *     <li>{@link Mode#OPEN}: requests are sent at {@link #requestsPerSecond} regardless of how long the server takes to
+ *     answer, and latency is measured from when each request was supposed to be sent, so a slow server cannot hide its
+ *     latency by slowing down the generator.</li>
+ * </ul>
+ */
+class LoadGenerator {
+
+    enum Mode {
+        CLOSED, OPEN
+    }
+
+    Mode mode = Mode.CLOSED
+    int connections = 32
+    /**
+     * Only for {@link Mode#OPEN}.
+     */
+    double requestsPerSecond = 1000
+    Duration warmUp = Duration.ofSeconds(3)
+    Duration duration = Duration.ofSeconds(10)
+
+    LoadResult run(ReplayTarget target, byte[] request) {
+        generate(target, request, warmUp)
+
+        return generate(target, request, duration)
+    }
+
+    private LoadResult generate(ReplayTarget target, byte[] request, Duration duration) {
+        def latencyHistogram = new LatencyHistogram()
+        def failedCount = new AtomicLong()
+        ExecutorService executor = Executors.newFixedThreadPool(connections, new CustomizableThreadFactory("load-generator-"))
+
+        long startTime = System.nanoTime()
+        long endTime = startTime + duration.toNanos()
+        def send = { long intendedTime ->
+            try {
+                target.send(request)
+            } catch (Exception ignored) {
+                failedCount.incrementAndGet()
+            }
+            latencyHistogram.record(Math.max(0, System.nanoTime() - intendedTime))
+        }
+
+        try {
+            if (mode == Mode.CLOSED) {
+                connections.times {
+                    executor.execute {
+                        long sendTime
+                        while ((sendTime = System.nanoTime()) - endTime < 0) {
+                            send(sendTime)
+                        }
+                    }
+                }
+            } else {
+                long interval = (long) (1e9 / requestsPerSecond)
+                for (long intendedTime = startTime; intendedTime - endTime < 0; intendedTime += interval) {
+                    waitUntil(intendedTime)
+
+                    long sendTime = intendedTime
+                    executor.execute { send(sendTime) }
+                }
+            }
+        } finally {
+            executor.shutdown()
+        }
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)
+
+        return new LoadResult(
+                latencyHistogram.count,
+                failedCount.get(),
+                Duration.ofNanos(System.nanoTime() - startTime),
+                latencyHistogram)
+    }
+
+    private static void waitUntil(long time) {
+        long remaining
+        while ((remaining = time - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining)
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.yihtserns.spring.remoting.jsonrpc.loadtest
+
+import com.github.yihtserns.spring.remoting.jsonrpc.util.LatencyHistogram
+
+import java.time.Duration
+
+class LoadResult {
+
+    final long requestCount
+    final long failedCount
+    final Duration elapsed
+    /**
+     * Nanoseconds.
+     */
+    final LatencyHistogram latencyHistogram
+
+    LoadResult(long requestCount, long failedCount, Duration elapsed, LatencyHistogram latencyHistogram) {
+        this.requestCount = requestCount
+        this.failedCount = failedCount
+        this.elapsed = elapsed
+        this.latencyHistogram = latencyHistogram
+    }
+
+    /**
+     * @return requests per second
+     */
+    double getThroughput() {
+        return elapsed.isZero() ? 0 : requestCount * 1e9 / elapsed.toNanos()
+    }
+
+    double getLatencyMillisAtPercentile(double percentile) {
+        return latencyHistogram.getValueAtPercentile(percentile) / 1e6
+    }
+
+    @Override
+    String toString() {
+        return String.format(
+                "requests=%d, failed=%d, throughput=%.1f/s, latency p50=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+                requestCount,
+                failedCount,
+                throughput,
+                getLatencyMillisAtPercentile(50),
+                getLatencyMillisAtPercentile(99),
+                getLatencyMillisAtPercentile(99.9),
+                latencyHistogram.maxValue / 1e6)
+    }
+}
@@ -0,0 +1,153 @@
+package com.github.yihtserns.spring.remoting.jsonrpc.loadtest
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.yihtserns.spring.remoting.jsonrpc.CalcService
+import com.github.yihtserns.spring.remoting.jsonrpc.CalcServiceImpl
+import com.github.yihtserns.spring.remoting.jsonrpc.CustomApplicationExceptionToError
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcServiceExporter
+import com.github.yihtserns.spring.remoting.jsonrpc.capture.ReplayTarget
+import com.github.yihtserns.spring.remoting.jsonrpc.jackson.JacksonJsonProcessor
+import groovy.util.logging.Slf4j
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.web.server.LocalServerPort
+import org.springframework.context.annotation.Bean
+import org.springframework.context.annotation.Configuration
+import spock.lang.Requires
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Paths
+import java.time.Duration
+
+/**
+ * End-to-end throughput & latency of {@link JsonRpcServiceExporter} in an embedded server, compared against
+ * {@code loadtest-baseline.json}.
+ * <p>
+ * Only runs when requested, e.g. {@code mvn test -Dloadtest=true -Dtest=LoadTestSpecification}, optionally with:
+ * </p>
+ * <ul>
+ *     <li>{@code -Dloadtest.duration=10} seconds to measure each scenario, after a warm-up of a third of that.</li>
+ *     <li>{@code -Dloadtest.connections=32} concurrent connections.</li>
+ *     <li>{@code -Dloadtest.rate=1000} requests per second for open-loop scenarios.</li>
+ *     <li>{@code -Dloadtest.tolerance=0.25} how much worse than the baseline a result can be before failing.</li>
+ *     <li>{@code -Dloadtest.baseline=path/to/baseline.json} to compare against a different baseline.</li>
+ *     <li>{@code -Dloadtest.recordBaseline=src/test/resources/loadtest-baseline.json} to record the results as the new
+ *     baseline instead of comparing against it - baselines only make sense for the machine they were recorded on.</li>
+ * </ul>
+ */
+@Slf4j
+@Requires({ System.getProperty("loadtest") })
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class LoadTestSpecification extends Specification {
+
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("loadtest.duration", 10))
+    private static final int CONNECTIONS = Integer.getInteger("loadtest.connections", 32)
+    private static final double REQUESTS_PER_SECOND = Double.parseDouble(System.getProperty("loadtest.rate", "1000"))
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("loadtest.tolerance", "0.25"))
+
+    @Shared
+    private ObjectMapper objectMapper = new ObjectMapper()
+    @Shared
+    private Map<String, Map<String, Double>> baseline = readBaseline()
+    @Shared
+    private Map<String, Map<String, Double>> results = new TreeMap<>()
+    @Shared
+    private String originalMaxConnections
+
+    @LocalServerPort
+    private int port
+
+    def setupSpec() {
+        // Otherwise the JDK only keeps 5 connections alive per destination. Only takes effect if nothing in this JVM has
+        // used HttpURLConnection's keep-alive cache yet, hence running this spec on its own.
+        originalMaxConnections = System.getProperty("http.maxConnections")
+        System.setProperty("http.maxConnections", String.valueOf(CONNECTIONS))
+    }
+
+    def cleanupSpec() {
+        if (originalMaxConnections != null) {
+            System.setProperty("http.maxConnections", originalMaxConnections)
+        } else {
+            System.clearProperty("http.maxConnections")
+        }
+
+        String recordBaseline = System.getProperty("loadtest.recordBaseline")
+        if (recordBaseline) {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(Paths.get(recordBaseline).toFile(), results)
+            log.info("Recorded baseline into: {}", recordBaseline)
+        }
+    }
+
+    def "measure #shape (#mode-loop)"() {
+        given:
+        def scenario = "${mode.name().toLowerCase()}/${shape}".toString()
+        def loadGenerator = new LoadGenerator(
+                mode: mode,
+                connections: CONNECTIONS,
+                requestsPerSecond: REQUESTS_PER_SECOND,
+                warmUp: DURATION.dividedBy(3),
+                duration: DURATION)
+
+        when:
+        def result = loadGenerator.run(
+                ReplayTarget.url("http://localhost:${port}/calc"),
+                objectMapper.writeValueAsBytes(request))
+        log.info(String.format("%-30s %s", scenario, result))
+
+        results[scenario] = [
+                throughput: result.throughput,
+                p50Millis : result.getLatencyMillisAtPercentile(50),
+                p99Millis : result.getLatencyMillisAtPercentile(99)
+        ]
+
+        then:
+        result.failedCount == 0
+
+        and: "no regression"
+        def expected = baseline[scenario]
+        if (expected && !System.getProperty("loadtest.recordBaseline")) {
+            if (mode == LoadGenerator.Mode.CLOSED) { // Open-loop throughput is whatever the generator offers
+                assert result.throughput >= expected.throughput * (1 - TOLERANCE)
+            }
+            assert result.getLatencyMillisAtPercentile(50) <= expected.p50Millis * (1 + TOLERANCE)
+            assert result.getLatencyMillisAtPercentile(99) <= expected.p99Millis * (1 + TOLERANCE)
+        }
+
+        where:
+        [shape, request, mode] << [
+                [
+                        ["small", [jsonrpc: "2.0", id: 1, method: "subtractArray", params: [10, 3]]],
+                        ["large params", [jsonrpc: "2.0", id: 1, method: "returnStringListArg", params: [(1..1000).collect { "Value ${it}".toString() }]]],
+                        ["error", [jsonrpc: "2.0", id: 1, method: "throwCustomApplicationException", params: [100]]],
+                        ["notification", [jsonrpc: "2.0", method: "subtractArray", params: [10, 3]]]
+                ],
+                LoadGenerator.Mode.values()
+        ].combinations().collect { shapeAndRequest, loopMode -> shapeAndRequest + [loopMode] }
+    }
+
+    private static Map<String, Map<String, Double>> readBaseline() {
+        String baselineFile = System.getProperty("loadtest.baseline")
+        if (baselineFile) {
+            return new ObjectMapper().readValue(Files.readAllBytes(Paths.get(baselineFile)), Map)
+        }
+
+        def inputStream = LoadTestSpecification.getResourceAsStream("/loadtest-baseline.json")
+        return inputStream ? new ObjectMapper().readValue(inputStream, Map) : [:]
+    }
+
+    @Configuration
+    @EnableAutoConfiguration
+    static class Application {
+
+        @Bean("/calc")
+        JsonRpcServiceExporter calcServiceJsonRpcServiceExporter(ObjectMapper objectMapper) {
+            return new JsonRpcServiceExporter(
+                    serviceInterface: CalcService,
+                    service: new CalcServiceImpl(),
+                    jsonProcessor: JacksonJsonProcessor.from(objectMapper),
+                    exceptionHandler: new CustomApplicationExceptionToError())
+        }
+    }
+}
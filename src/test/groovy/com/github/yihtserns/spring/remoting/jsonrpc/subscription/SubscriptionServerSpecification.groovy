@@ -0,0 +1,157 @@
+package com.github.yihtserns.spring.remoting.jsonrpc.subscription
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcServiceExporter
+import com.github.yihtserns.spring.remoting.jsonrpc.jackson.JacksonJsonProcessor
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.web.server.LocalServerPort
+import org.springframework.context.annotation.Bean
+import org.springframework.context.annotation.Configuration
+import org.springframework.http.MediaType
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Streams through an embedded server, to exercise the servlet container's async support.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class SubscriptionServerSpecification extends Specification {
+
+    private static final int BUFFER_CAPACITY = 500
+
+    @LocalServerPort
+    private int port
+    @Autowired
+    private TickerServiceImpl tickerService
+    @Autowired
+    private SubscriptionHub subscriptionHub
+    private ObjectMapper objectMapper = new ObjectMapper()
+    private PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    def "can stream events over HTTP"() {
+        given:
+        def connection = subscribe("a")
+        def reader = new BufferedReader(new InputStreamReader(connection.inputStream, StandardCharsets.UTF_8))
+
+        expect:
+        connection.contentType.startsWith(MediaType.TEXT_EVENT_STREAM_VALUE)
+
+        when:
+        tickerService.tick("a", 1)
+        tickerService.tick("a", 2)
+
+        then:
+        reader.readLine() == 'data: {"jsonrpc":"2.0","method":"ticks","params":[1]}'
+        reader.readLine() == ''
+        reader.readLine() == 'data: {"jsonrpc":"2.0","method":"ticks","params":[2]}'
+        reader.readLine() == ''
+
+        when:
+        tickerService.complete("a")
+
+        then: "response is ended"
+        reader.readLine() == null
+
+        cleanup:
+        connection.disconnect()
+    }
+
+    def "should cancel publisher subscription when the client disconnects"() {
+        given:
+        def connection = subscribe("b")
+        connection.inputStream
+        def cancelCount = tickerService.cancelCount.get()
+
+        when:
+        connection.disconnect()
+
+        then: "noticed when writing the next events"
+        conditions.eventually {
+            tickerService.tick("b", 1)
+            assert tickerService.cancelCount.get() == cancelCount + 1
+        }
+        subscriptionHub.topicCount == 0
+    }
+
+    def "should keep writing to other subscribers while a client is not reading"() {
+        given: "client that never reads"
+        def stalledConnection = subscribe("c")
+        stalledConnection.inputStream
+        def connection = subscribe("c")
+        def reader = new BufferedReader(new InputStreamReader(connection.inputStream, StandardCharsets.UTF_8))
+        def receivedCount = new AtomicInteger()
+        def readerThread = Thread.start {
+            String line
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("data: ")) {
+                    receivedCount.incrementAndGet()
+                }
+            }
+        }
+        def evictedCount = subscriptionHub.evictedCount
+
+        when: "published until the non-reading client's socket & then buffer fill up"
+        def publishedCount = 0
+        while (subscriptionHub.evictedCount == evictedCount && publishedCount < 2_000_000) {
+            BUFFER_CAPACITY.times { tickerService.tick("c", publishedCount++) }
+            conditions.eventually {
+                assert receivedCount.get() == publishedCount
+            }
+        }
+
+        then: "it did not hold up the only writer thread"
+        subscriptionHub.evictedCount == evictedCount + 1
+        receivedCount.get() == publishedCount
+
+        cleanup: "end the response, for the reader thread to finish"
+        tickerService.complete("c")
+        readerThread?.join(5000)
+        connection?.disconnect()
+        stalledConnection?.disconnect()
+    }
+
+    private HttpURLConnection subscribe(String name) {
+        def connection = (HttpURLConnection) new URL("http://localhost:${port}/ticker").openConnection()
+        connection.requestMethod = "POST"
+        connection.doOutput = true
+        connection.setRequestProperty("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+        connection.outputStream.withCloseable {
+            it.write(objectMapper.writeValueAsBytes([jsonrpc: "2.0", id: 1, method: "ticks", params: [name]]))
+        }
+        assert connection.responseCode == 200 // Only sent once subscribed
+
+        return connection
+    }
+
+    @Configuration
+    @EnableAutoConfiguration
+    static class Application {
+
+        @Bean
+        TickerServiceImpl tickerService() {
+            return new TickerServiceImpl()
+        }
+
+        @Bean
+        SubscriptionHub subscriptionHub() {
+            return new SubscriptionHub(
+                    writerThreadCount: 1,
+                    bufferCapacity: BUFFER_CAPACITY,
+                    maxBufferedEvents: BUFFER_CAPACITY * 2)
+        }
+
+        @Bean("/ticker")
+        JsonRpcServiceExporter ticker(TickerServiceImpl tickerService, SubscriptionHub subscriptionHub, ObjectMapper objectMapper) {
+            return new JsonRpcServiceExporter(
+                    serviceInterface: TickerService,
+                    service: tickerService,
+                    subscriptionHub: subscriptionHub,
+                    jsonProcessor: JacksonJsonProcessor.from(objectMapper))
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.github.yihtserns.spring.remoting.jsonrpc.subscription
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.yihtserns.spring.remoting.jsonrpc.ExecutionContext
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonProcessor
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcNotification
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcRequest
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcResponse
+import com.github.yihtserns.spring.remoting.jsonrpc.JsonRpcServiceExporter
+import com.github.yihtserns.spring.remoting.jsonrpc.jackson.JacksonJsonProcessor
+import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import javax.servlet.ServletOutputStream
+import javax.servlet.WriteListener
+import javax.servlet.http.HttpServletResponse
+import javax.servlet.http.HttpServletResponseWrapper
+import java.time.Duration
+import java.util.concurrent.atomic.AtomicInteger
+
+class SubscriptionSpecification extends Specification {
+
+    private ObjectMapper objectMapper = new ObjectMapper()
+    private PollingConditions conditions = new PollingConditions(timeout: 5)
+    private TickerServiceImpl tickerService = new TickerServiceImpl()
+    private SubscriptionHub subscriptionHub = new SubscriptionHub()
+    private AtomicInteger notificationWrittenCount = new AtomicInteger()
+    private JsonRpcServiceExporter exporter
+
+    def setup() {
+        subscriptionHub.afterPropertiesSet()
+    }
+
+    def cleanup() {
+        exporter?.destroy()
+        subscriptionHub.destroy()
+    }
+
+    def "can stream events as JSON-RPC notifications"() {
+        given:
+        createExporter()
+        def httpRequest = createRequest([jsonrpc: "2.0", id: 1, method: "ticks", params: ["a"]])
+        def httpResponse = new NonBlockingMockHttpServletResponse()
+
+        when:
+        exporter.handleRequest(httpRequest, httpResponse)
+        tickerService.tick("a", 1)
+        tickerService.tick("a", 2)
+
+        then:
+        httpRequest.asyncStarted
+        httpResponse.contentType.startsWith(MediaType.TEXT_EVENT_STREAM_VALUE)
+        conditions.eventually {
+            assert httpResponse.contentAsString ==
+                    'data: {"jsonrpc":"2.0","method":"ticks","params":[1]}\n\n' +
+                    'data: {"jsonrpc":"2.0","method":"ticks","params":[2]}\n\n'
+        }
+
+        when:
+        tickerService.complete("a")
+
+        then: "response is ended"
+        conditions.eventually {
+            assert !httpRequest.asyncStarted
+        }
+        subscriptionHub.topicCount == 0
+    }
+
+    def "identical subscriptions should share a single publisher subscription & serialization"() {
+        given:
+        createExporter()
+        def firstResponse = subscribe("a")
+        def secondResponse = subscribe("a")
+        def otherResponse = subscribe("b")
+
+        when:
+        tickerService.tick("a", 1)
+
+        then:
+        tickerService.subscribeCount.get() == 2
+        subscriptionHub.topicCount == 2
+        subscriptionHub.subscriberCount == 3
+        notificationWrittenCount.get() == 1
+        conditions.eventually {
+            assert firstResponse.contentAsString == 'data: {"jsonrpc":"2.0","method":"ticks","params":[1]}\n\n'
+            assert secondResponse.contentAsString == firstResponse.contentAsString
+        }
+        otherResponse.contentAsString.isEmpty()
+    }
+
+    def "should stream events published while subscribing"() {
+        given:
+        createExporter()
+        tickerService.initialTicks.a = 0
+        def httpRequest = createRequest([jsonrpc: "2.0", id: 1, method: "ticks", params: ["a"]])
+        def httpResponse = new NonBlockingMockHttpServletResponse()
+
+        when:
+        exporter.handleRequest(httpRequest, httpResponse)
+
+        then:
+        conditions.eventually {
+            assert httpResponse.contentAsString == 'data: {"jsonrpc":"2.0","method":"ticks","params":[0]}\n\n'
+        }
+    }
+
+    def "should send the latest event to subscriber joining a shared subscription"() {
+        given:
+        createExporter()
+        tickerService.initialTicks.a = 0
+        def firstResponse = subscribe("a")
+
+        when:
+        def secondResponse = subscribe("a")
+
+        then:
+        conditions.eventually {
+            assert secondResponse.contentAsString == 'data: {"jsonrpc":"2.0","method":"ticks","params":[0]}\n\n'
+        }
+
+        when:
+        tickerService.tick("a", 1)
+
+        then:
+        tickerService.subscribeCount.get() == 1
+        conditions.eventually {
+            assert firstResponse.contentAsString ==
+                    'data: {"jsonrpc":"2.0","method":"ticks","params":[0]}\n\n' +
+                    'data: {"jsonrpc":"2.0","method":"ticks","params":[1]}\n\n'
+            assert secondResponse.contentAsString == firstResponse.contentAsString
+        }
+    }
+
+    def "should only send later events to subscriber joining a shared subscription if replay is turned off"() {
+        given:
+        subscriptionHub.destroy()
+        subscriptionHub = new SubscriptionHub(replayLatestEvent: false)
+        subscriptionHub.afterPropertiesSet()
+        createExporter()
+        tickerService.initialTicks.a = 0
+        def firstResponse = subscribe("a")
+        def secondResponse = subscribe("a")
+
+        when:
+        tickerService.tick("a", 1)
+
+        then:
+        conditions.eventually {
+            assert firstResponse.contentAsString ==
+                    'data: {"jsonrpc":"2.0","method":"ticks","params":[0]}\n\n' +
+                    'data: {"jsonrpc":"2.0","method":"ticks","params":[1]}\n\n'
+            assert secondResponse.contentAsString == 'data: {"jsonrpc":"2.0","method":"ticks","params":[1]}\n\n'
+        }
+    }
+
+    def "should not disconnect subscriber for falling behind on a burst of events"() {
+        given:
+        subscriptionHub.destroy()
+        subscriptionHub = new SubscriptionHub(bufferCapacity: 2, maxBacklogDuration: Duration.ofMinutes(1))
+        subscriptionHub.afterPropertiesSet()
+        createExporter()
+        def httpResponse = subscribe("a")
+
+        when: "published faster than the writer thread can start"
+        (1..100).each { tickerService.tick("a", it) }
+
+        then:
+        conditions.eventually {
+            assert httpResponse.contentAsString.count("data: ") == 100
+        }
+        subscriptionHub.evictedCount == 0
+    }
+
+    def "should disconnect subscriber that cannot keep up"() {
+        given:
+        def maxBacklogMillis = 200
+        subscriptionHub.destroy()
+        subscriptionHub = new SubscriptionHub(bufferCapacity: 2, maxBacklogDuration: Duration.ofMillis(maxBacklogMillis))
+        subscriptionHub.afterPropertiesSet()
+        createExporter()
+
+        def slowRequest = createRequest([jsonrpc: "2.0", id: 1, method: "ticks", params: ["a"]])
+        exporter.handleRequest(slowRequest, createStalledResponse())
+        def fastResponse = subscribe("a")
+
+        when: "both fall behind on a burst"
+        (1..10).each { tickerService.tick("a", it) }
+
+        then: "neither is disconnected yet"
+        conditions.eventually {
+            assert fastResponse.contentAsString.count("data: ") == 10
+        }
+        subscriptionHub.evictedCount == 0
+        subscriptionHub.subscriberCount == 2
+
+        when: "the slow subscriber is still behind after the max backlog duration"
+        sleep(maxBacklogMillis * 2)
+        tickerService.tick("a", 11)
+
+        then: "only the slow subscriber is disconnected"
+        subscriptionHub.evictedCount == 1
+        subscriptionHub.subscriberCount == 1
+        !slowRequest.asyncStarted
+        conditions.eventually {
+            assert fastResponse.contentAsString.count("data: ") == 11
+        }
+        fastResponse.contentAsString.endsWith('data: {"jsonrpc":"2.0","method":"ticks","params":[11]}\n\n')
+    }
+
+    def "should disconnect subscriber right away once its buffer is full"() {
+        given:
+        subscriptionHub.destroy()
+        subscriptionHub = new SubscriptionHub(bufferCapacity: 2, maxBufferedEvents: 5, maxBacklogDuration: Duration.ofMinutes(1))
+        subscriptionHub.afterPropertiesSet()
+        createExporter()
+
+        def stalledRequest = createRequest([jsonrpc: "2.0", id: 1, method: "ticks", params: ["a"]])
+        exporter.handleRequest(stalledRequest, createStalledResponse())
+
+        when:
+        (1..5).each { tickerService.tick("a", it) }
+
+        then: "still within its max backlog duration"
+        subscriptionHub.evictedCount == 0
+        stalledRequest.asyncStarted
+
+        when:
+        tickerService.tick("a", 6)
+
+        then:
+        subscriptionHub.evictedCount == 1
+        subscriptionHub.subscriberCount == 0
+        !stalledRequest.asyncStarted
+    }
+
+    def "should cancel publisher subscription when the last subscriber disconnects"() {
+        given:
+        createExporter()
+        def firstRequest = createRequest([jsonrpc: "2.0", id: 1, method: "ticks", params: ["a"]])
+        def secondRequest = createRequest([jsonrpc: "2.0", id: 2, method: "ticks", params: ["a"]])
+        exporter.handleRequest(firstRequest, new NonBlockingMockHttpServletResponse())
+        exporter.handleRequest(secondRequest, new NonBlockingMockHttpServletResponse())
+
+        when:
+        firstRequest.asyncContext.complete()
+
+        then:
+        tickerService.cancelCount.get() == 0
+        subscriptionHub.subscriberCount == 1
+
+        when:
+        secondRequest.asyncContext.complete()
+
+        then:
+        tickerService.cancelCount.get() == 1
+        subscriptionHub.topicCount == 0
+    }
+
+    def "should end subscriptions of replaced implementation, so that clients subscribe to the replacement"() {
+        given:
+        createExporter()
+        def oldRequest = createRequest([jsonrpc: "2.0", id: 1, method: "ticks", params: ["a"]])
+        exporter.handleRequest(oldRequest, new NonBlockingMockHttpServletResponse())
+        def newTickerService = new TickerServiceImpl()
+
+        when:
+        def drained = exporter.registerService(TickerService, newTickerService, Duration.ofSeconds(1))
+
+        then:
+        drained
+        conditions.eventually {
+            assert !oldRequest.asyncStarted
+        }
+        tickerService.cancelCount.get() == 1
+        subscriptionHub.topicCount == 0
+
+        when:
+        def newResponse = subscribe("a")
+        tickerService.tick("a", 1)
+        newTickerService.tick("a", 2)
+
+        then:
+        tickerService.subscribeCount.get() == 1
+        newTickerService.subscribeCount.get() == 1
+        conditions.eventually {
+            assert newResponse.contentAsString == 'data: {"jsonrpc":"2.0","method":"ticks","params":[2]}\n\n'
+        }
+    }
+
+    def "should not subscribe for notification"() {
+        given:
+        createExporter()
+        def httpRequest = createRequest([jsonrpc: "2.0", method: "ticks", params: ["a"]])
+        def httpResponse = new MockHttpServletResponse()
+
+        when:
+        exporter.handleRequest(httpRequest, httpResponse)
+
+        then:
+        httpResponse.status == HttpStatus.NO_CONTENT.value()
+        !httpRequest.asyncStarted
+        tickerService.subscribeCount.get() == 0
+    }
+
+    private void createExporter() {
+        def jsonProcessor = JacksonJsonProcessor.from(objectMapper)
+        def notificationWrittenCount = this.notificationWrittenCount
+
+        exporter = new JsonRpcServiceExporter(
+                serviceInterface: TickerService,
+                service: tickerService,
+                subscriptionHub: subscriptionHub,
+                jsonProcessor: new JsonProcessor() {
+
+                    @Override
+                    JsonRpcRequest<?> processRequest(InputStream inputStream) {
+                        return jsonProcessor.processRequest(inputStream)
+                    }
+
+                    @Override
+                    List<Object> processParamsIntoMethodArguments(ExecutionContext context) {
+                        return jsonProcessor.processParamsIntoMethodArguments(context)
+                    }
+
+                    @Override
+                    void processResponse(JsonRpcResponse response, OutputStream outputStream) {
+                        jsonProcessor.processResponse(response, outputStream)
+                    }
+
+                    @Override
+                    void processNotification(JsonRpcNotification notification, OutputStream outputStream) {
+                        notificationWrittenCount.incrementAndGet()
+                        jsonProcessor.processNotification(notification, outputStream)
+                    }
+                })
+        exporter.afterPropertiesSet()
+    }
+
+    private MockHttpServletResponse subscribe(String name) {
+        def httpResponse = new NonBlockingMockHttpServletResponse()
+        exporter.handleRequest(createRequest([jsonrpc: "2.0", id: 1, method: "ticks", params: [name]]), httpResponse)
+
+        return httpResponse
+    }
+
+    private MockHttpServletRequest createRequest(Map request) {
+        return new MockHttpServletRequest(content: objectMapper.writeValueAsBytes(request), asyncSupported: true)
+    }
+
+    /**
+     * @return response whose client never reads, i.e. can never be written to without blocking
+     */
+    private static HttpServletResponse createStalledResponse() {
+        return new HttpServletResponseWrapper(new MockHttpServletResponse()) {
+
+            @Override
+            ServletOutputStream getOutputStream() {
+                return new ServletOutputStream() {
+
+                    @Override
+                    boolean isReady() {
+                        return false
+                    }
+
+                    @Override
+                    void setWriteListener(WriteListener writeListener) {
+                    }
+
+                    @Override
+                    void write(int b) {
+                        throw new IllegalStateException("Not ready to be written to")
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Supports non-blocking output, which {@link MockHttpServletResponse} does not.
+     */
+    private static class NonBlockingMockHttpServletResponse extends MockHttpServletResponse {
+
+        @Override
+        ServletOutputStream getOutputStream() {
+            ServletOutputStream outputStream = super.getOutputStream()
+
+            return new ServletOutputStream() {
+
+                @Override
+                boolean isReady() {
+                    return true
+                }
+
+                @Override
+                void setWriteListener(WriteListener writeListener) {
+                    writeListener.onWritePossible()
+                }
+
+                @Override
+                void write(int b) {
+                    outputStream.write(b)
+                }
+
+                @Override
+                void write(byte[] bytes, int offset, int length) {
+                    outputStream.write(bytes, offset, length)
+                }
+
+                @Override
+                void flush() {
+                    outputStream.flush()
+                }
+            }
+        }
+    }
+}
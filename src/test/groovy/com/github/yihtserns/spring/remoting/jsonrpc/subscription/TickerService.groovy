@@ -0,0 +1,6 @@
+package com.github.yihtserns.spring.remoting.jsonrpc.subscription
+
+interface TickerService {
+
+    EventPublisher<Integer> ticks(String name)
+}
@@ -0,0 +1,52 @@
+package com.github.yihtserns.spring.remoting.jsonrpc.subscription
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+
+class TickerServiceImpl implements TickerService {
+
+    final AtomicInteger subscribeCount = new AtomicInteger()
+    final AtomicInteger cancelCount = new AtomicInteger()
+    /**
+     * Name to the tick published to each subscriber while it subscribes.
+     */
+    final Map<String, Integer> initialTicks = new ConcurrentHashMap<>()
+    private final Map<String, List<EventSubscriber<? super Integer>>> name2Subscribers = new ConcurrentHashMap<>()
+
+    @Override
+    EventPublisher<Integer> ticks(String name) {
+        return new EventPublisher<Integer>() {
+
+            @Override
+            EventPublisher.Subscription subscribe(EventSubscriber<? super Integer> subscriber) {
+                subscribeCount.incrementAndGet()
+                subscribersOf(name).add(subscriber)
+                if (initialTicks.containsKey(name)) {
+                    subscriber.onEvent(initialTicks[name])
+                }
+
+                return new EventPublisher.Subscription() {
+
+                    @Override
+                    void cancel() {
+                        cancelCount.incrementAndGet()
+                        subscribersOf(name).remove(subscriber)
+                    }
+                }
+            }
+        }
+    }
+
+    void tick(String name, int value) {
+        subscribersOf(name).each { it.onEvent(value) }
+    }
+
+    void complete(String name) {
+        subscribersOf(name).each { it.onComplete() }
+    }
+
+    List<EventSubscriber<? super Integer>> subscribersOf(String name) {
+        return name2Subscribers.computeIfAbsent(name, { new CopyOnWriteArrayList<>() })
+    }
+}